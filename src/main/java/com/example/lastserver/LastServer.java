@@ -1,11 +1,14 @@
 package com.example.lastserver;
 
 import com.example.lastserver.commands.LastServerCommand;
+import com.example.lastserver.config.ConfigWatcher;
 import com.example.lastserver.config.Configuration;
 import com.example.lastserver.database.MySQL;
 import com.example.lastserver.database.ServerManager;
+import com.example.lastserver.discord.WebhookDispatcher;
 import com.example.lastserver.listeners.ConnectionListener;
 import com.example.lastserver.listeners.ServerSwitchListener;
+import com.example.lastserver.utils.TimingWheel;
 import com.google.inject.Inject;
 import com.velocitypowered.api.command.CommandMeta;
 import com.velocitypowered.api.event.Subscribe;
@@ -17,6 +20,7 @@ import com.velocitypowered.api.proxy.ProxyServer;
 import org.slf4j.Logger;
 
 import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Plugin(
@@ -30,9 +34,14 @@ public class LastServer {
     private final ProxyServer server;
     private final Logger logger;
     private final Path dataDirectory;
-    private Configuration configuration;
+    private volatile Configuration configuration;
     private MySQL mysql;
     private ServerManager serverManager;
+    private WebhookDispatcher webhookDispatcher;
+    private ServerSwitchListener serverSwitchListener;
+    private TimingWheel timingWheel;
+    private ConfigWatcher configWatcher;
+    private volatile boolean maintenance;
 
     @Inject
     public LastServer(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -46,11 +55,12 @@ public class LastServer {
         logger.info("Starting LastServer plugin...");
         
         // Load configuration
-        configuration = new Configuration(this, dataDirectory);
-        if (!configuration.load()) {
+        configuration = Configuration.load(this, dataDirectory);
+        if (configuration == null) {
             logger.error("Failed to load configuration! Plugin will not function.");
             return;
         }
+        maintenance = configuration.isMaintenanceEnabled();
         
         // Initialize database
         mysql = new MySQL(this);
@@ -62,9 +72,19 @@ public class LastServer {
         // Initialize server manager
         serverManager = new ServerManager(this);
         
+        // One ticker for leave detection and cooldowns instead of a scheduler task per event
+        timingWheel = new TimingWheel(this);
+        timingWheel.start();
+        
+        // Discord embeds go out through one queue and connection
+        webhookDispatcher = new WebhookDispatcher(this);
+        webhookDispatcher.start();
+        
         // Register listeners
         server.getEventManager().register(this, new ConnectionListener(this));
-        server.getEventManager().register(this, new ServerSwitchListener(this));
+        serverSwitchListener = new ServerSwitchListener(this);
+        serverSwitchListener.restorePendingLeaves(dataDirectory.resolve("pending-leaves.dat"));
+        server.getEventManager().register(this, serverSwitchListener);
         
         // Register commands
         CommandMeta commandMeta = server.getCommandManager()
@@ -82,6 +102,12 @@ public class LastServer {
             .repeat(6, TimeUnit.HOURS)
             .schedule();
         
+        // Pick up edits to config.yml without a reload command
+        if (configuration.isAutoReload()) {
+            configWatcher = new ConfigWatcher(this, dataDirectory);
+            configWatcher.start();
+        }
+        
         logger.info("LastServer plugin loaded successfully!");
     }
 
@@ -89,26 +115,88 @@ public class LastServer {
     public void onProxyShutdown(ProxyShutdownEvent event) {
         logger.info("Shutting down LastServer plugin...");
         
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+        
+        if (serverSwitchListener != null) {
+            serverSwitchListener.savePendingLeaves(dataDirectory.resolve("pending-leaves.dat"));
+        }
+        if (timingWheel != null) {
+            timingWheel.stop();
+        }
+        if (webhookDispatcher != null) {
+            webhookDispatcher.shutdown();
+        }
+        
+        // Flush pending writes while the pool is still open
+        if (serverManager != null) {
+            serverManager.shutdown();
+        }
+        
         if (mysql != null) {
-            mysql.close();
+            mysql.shutdown();
         }
         
         logger.info("LastServer plugin shutdown complete.");
     }
 
-    public void reload() {
+    // Loads the new settings into a separate Configuration and swaps it in only once it parsed and validated,
+    // then lets each subsystem react to what actually changed. Called by the command and the config watcher.
+    public synchronized boolean reload() {
         logger.info("Reloading LastServer configuration...");
         
-        if (configuration.load()) {
-            // Reconnect to database if settings changed
-            if (mysql != null) {
-                mysql.close();
-                mysql.connect();
+        Configuration updated = Configuration.load(this, dataDirectory);
+        if (updated == null) {
+            logger.error("Failed to reload configuration! Keeping the current settings.");
+            return false;
+        }
+        
+        Configuration previous = configuration;
+        List<String> changed = updated.getChangedSections(previous);
+        if (changed.isEmpty()) {
+            logger.info("Configuration unchanged, nothing to reload");
+            return true;
+        }
+        logger.info("Changed configuration sections: {}", String.join(", ", changed));
+        
+        // The new mysql section only goes live once the pool for it is connected, which can take a while
+        boolean connectionChanged = mysql != null && !updated.hasSameConnectionSettings(previous);
+        configuration = connectionChanged ? updated.withMysqlSettingsOf(this, previous) : updated;
+        
+        // Keep a runtime maintenance toggle unless the maintenance section itself was edited
+        if (changed.contains("maintenance")) {
+            maintenance = updated.isMaintenanceEnabled();
+        }
+        
+        if (updated.isAutoReload() && configWatcher == null) {
+            configWatcher = new ConfigWatcher(this, dataDirectory);
+            configWatcher.start();
+        } else if (!updated.isAutoReload() && configWatcher != null) {
+            configWatcher.close();
+            configWatcher = null;
+        }
+        
+        boolean success = true;
+        if (mysql != null) {
+            success = mysql.applyConfiguration(previous, updated);
+            // On failure the old settings stay published, they are what the pool is still connected with
+            if (success && connectionChanged) {
+                configuration = updated;
             }
+        }
+        if (serverManager != null) {
+            serverManager.applyConfiguration(previous);
+        }
+        
+        if (success) {
             logger.info("Configuration reloaded successfully!");
-        } else {
-            logger.error("Failed to reload configuration!");
         }
+        return success;
+    }
+
+    public Path getDataDirectory() {
+        return dataDirectory;
     }
 
     public ProxyServer getServer() {
@@ -123,6 +211,15 @@ public class LastServer {
         return configuration;
     }
 
+    // Starts from the configured value and can be toggled at runtime with /lastserver maintenance
+    public boolean isMaintenance() {
+        return maintenance;
+    }
+
+    public void setMaintenance(boolean enabled) {
+        this.maintenance = enabled;
+    }
+
     public MySQL getMySQL() {
         return mysql;
     }
@@ -130,4 +227,12 @@ public class LastServer {
     public ServerManager getServerManager() {
         return serverManager;
     }
+
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    public WebhookDispatcher getWebhookDispatcher() {
+        return webhookDispatcher;
+    }
 }
\ No newline at end of file
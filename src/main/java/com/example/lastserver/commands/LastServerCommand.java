@@ -1,20 +1,32 @@
 package com.example.lastserver.commands;
 
 import com.example.lastserver.LastServer;
+import com.example.lastserver.database.CircuitBreaker;
+import com.example.lastserver.database.DatabaseExecutor;
+import com.example.lastserver.database.KnownPlayerFilter;
+import com.example.lastserver.database.PlayerCache;
+import com.example.lastserver.database.PlayerMirror;
+import com.example.lastserver.database.RetentionCleaner;
+import com.example.lastserver.database.SchemaMigrator;
+import com.example.lastserver.database.ServerHealthMonitor;
+import com.example.lastserver.database.WriteJournal;
+import com.example.lastserver.discord.WebhookDispatcher;
 import com.example.lastserver.utils.MessageUtil;
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
 import com.velocitypowered.api.proxy.Player;
 
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class LastServerCommand implements SimpleCommand {
     private final LastServer plugin;
-    private final ConcurrentHashMap<String, Long> commandCooldowns = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Long> commandCooldowns = new ConcurrentHashMap<>();
     private static final long COOLDOWN_TIME = TimeUnit.SECONDS.toMillis(1);
+    private static final UUID CONSOLE = new UUID(0, 0);
 
     public LastServerCommand(LastServer plugin) {
         this.plugin = plugin;
@@ -31,11 +43,12 @@ public class LastServerCommand implements SimpleCommand {
                 source.sendMessage(MessageUtil.format("<gray>/lastserver reload - Reload configuration</gray>"));
                 source.sendMessage(MessageUtil.format("<gray>/lastserver maintenance <on|off> - Toggle maintenance mode</gray>"));
                 source.sendMessage(MessageUtil.format("<gray>/lastserver info <player> - Check a player's last server</gray>"));
+                source.sendMessage(MessageUtil.format("<gray>/lastserver stats - Show cache and database statistics</gray>"));
                 return;
             }
         }
 
-        String identifier = source instanceof Player ? ((Player) source).getUniqueId().toString() : "console";
+        UUID identifier = source instanceof Player ? ((Player) source).getUniqueId() : CONSOLE;
         
         if (isOnCooldown(identifier)) {
             source.sendMessage(MessageUtil.format("<red>Please wait before using this command again.</red>"));
@@ -49,6 +62,7 @@ public class LastServerCommand implements SimpleCommand {
             source.sendMessage(MessageUtil.format("<gray>/lastserver reload - Reload configuration</gray>"));
             source.sendMessage(MessageUtil.format("<gray>/lastserver maintenance <on|off> - Toggle maintenance mode</gray>"));
             source.sendMessage(MessageUtil.format("<gray>/lastserver info <player> - Check a player's last server</gray>"));
+            source.sendMessage(MessageUtil.format("<gray>/lastserver stats - Show cache and database statistics</gray>"));
             return;
         }
 
@@ -56,6 +70,7 @@ public class LastServerCommand implements SimpleCommand {
             case "reload" -> handleReload(source);
             case "maintenance" -> handleMaintenance(source, args);
             case "info" -> handleInfo(source, args);
+            case "stats" -> handleStats(source);
             default -> source.sendMessage(MessageUtil.format("<red>Unknown command. Use /lastserver help for usage.</red>"));
         }
     }
@@ -67,8 +82,11 @@ public class LastServerCommand implements SimpleCommand {
         }
 
         CompletableFuture.runAsync(() -> {
-            plugin.reload();
-            source.sendMessage(MessageUtil.format("<green>LastServer configuration reloaded successfully!</green>"));
+            if (plugin.reload()) {
+                source.sendMessage(MessageUtil.format("<green>LastServer configuration reloaded successfully!</green>"));
+            } else {
+                source.sendMessage(MessageUtil.format("<red>Failed to reload configuration, check the console for details.</red>"));
+            }
         }).exceptionally(throwable -> {
             source.sendMessage(MessageUtil.format("<red>Failed to reload configuration: " + throwable.getMessage() + "</red>"));
             return null;
@@ -94,7 +112,7 @@ public class LastServerCommand implements SimpleCommand {
             return;
         }
 
-        plugin.getConfiguration().setMaintenanceEnabled(enable);
+        plugin.setMaintenance(enable);
 
         if (enable) {
             source.sendMessage(MessageUtil.format("<yellow>Maintenance mode enabled. All new players will be sent to the maintenance server.</yellow>"));
@@ -134,6 +152,105 @@ public class LastServerCommand implements SimpleCommand {
         });
     }
 
+    private void handleStats(CommandSource source) {
+        if (!source.hasPermission("lastserver.admin.info")) {
+            source.sendMessage(MessageUtil.format("<red>You don't have permission to use this command.</red>"));
+            return;
+        }
+
+        PlayerCache cache = plugin.getServerManager().getPlayerCache();
+        long hits = cache.getHits();
+        long lookups = hits + cache.getMisses();
+        long hitRate = lookups == 0 ? 0 : hits * 100 / lookups;
+
+        source.sendMessage(MessageUtil.format("<yellow>LastServer Statistics:</yellow>"));
+        source.sendMessage(MessageUtil.format(
+            "<gray>Player cache: <yellow>" + cache.size() + "</yellow> entries, <yellow>" + hits + "</yellow> hits, <yellow>" +
+            cache.getMisses() + "</yellow> misses (" + hitRate + "%), <yellow>" + cache.getEvictions() + "</yellow> evictions</gray>"
+        ));
+        source.sendMessage(MessageUtil.format(
+            "<gray>Pending writes: <yellow>" + plugin.getServerManager().getPendingWriteCount() + "</yellow></gray>"
+        ));
+
+        PlayerMirror mirror = plugin.getServerManager().getMirror();
+        if (mirror != null) {
+            source.sendMessage(MessageUtil.format(
+                "<gray>Player mirror: <yellow>" + (mirror.isLoaded() ? mirror.size() + "</yellow> players, <yellow>" +
+                (mirror.getSizeBytes() / 1024 / 1024) + " MB" : "loading") + "</yellow></gray>"
+            ));
+        }
+
+        KnownPlayerFilter knownPlayers = plugin.getServerManager().getKnownPlayers();
+        if (knownPlayers.isReady()) {
+            source.sendMessage(MessageUtil.format(
+                "<gray>Known player filter: <yellow>" + knownPlayers.getLoadedPlayers() + "</yellow> players, <yellow>" +
+                (knownPlayers.getSizeBytes() / 1024) + " KB</yellow></gray>"
+            ));
+        }
+
+        ServerHealthMonitor health = plugin.getServerManager().getHealthMonitor();
+        source.sendMessage(MessageUtil.format(
+            "<gray>Backends: <yellow>" + health.getOnlineCount() + "/" + health.getTrackedCount() + "</yellow> online</gray>"
+        ));
+
+        if (plugin.getConfiguration().isDiscordEnabled()) {
+            WebhookDispatcher webhooks = plugin.getWebhookDispatcher();
+            source.sendMessage(MessageUtil.format(
+                "<gray>Discord: <yellow>" + webhooks.getSentCount() + "</yellow> embeds sent, <yellow>" + webhooks.getQueuedCount() +
+                "</yellow> queued, <yellow>" + webhooks.getDroppedCount() + "</yellow> dropped, <yellow>" +
+                webhooks.getRateLimitedCount() + "</yellow> rate limits, <yellow>" + webhooks.getExpiredCount() + "</yellow> expired, <yellow>" +
+                webhooks.getMergedCount() + "</yellow> merged</gray>"
+            ));
+            if (webhooks.hasBacklogOnDisk()) {
+                source.sendMessage(MessageUtil.format(
+                    "<gray>Discord spool: <yellow>" + webhooks.getSpoolSegmentCount() + "</yellow> segments, backlog waiting on disk</gray>"
+                ));
+            }
+        }
+
+        source.sendMessage(MessageUtil.format(
+            "<gray>Pending timers: <yellow>" + plugin.getTimingWheel().getPendingCount() + "</yellow></gray>"
+        ));
+
+        WriteJournal journal = plugin.getServerManager().getWriteJournal();
+        if (journal.hasPending()) {
+            source.sendMessage(MessageUtil.format(
+                "<gray>Write journal: <yellow>" + journal.getSegmentCount() + "</yellow> segments waiting to be replayed</gray>"
+            ));
+        }
+
+        DatabaseExecutor executor = plugin.getMySQL().getExecutor();
+        source.sendMessage(MessageUtil.format(
+            "<gray>Database tasks: <yellow>" + executor.getActiveCount() + "/" + executor.getMaxConcurrency() + "</yellow> active, <yellow>" +
+            executor.getQueueDepth() + "</yellow> queued, <yellow>" + executor.getAverageWaitMillis() + "ms</yellow> avg wait, <yellow>" +
+            executor.getMaxWaitMillis() + "ms</yellow> max wait</gray>"
+        ));
+
+        CircuitBreaker breaker = plugin.getMySQL().getCircuitBreaker();
+        source.sendMessage(MessageUtil.format(
+            "<gray>Circuit breaker: <yellow>" + breaker.getState() + "</yellow>, <yellow>" + breaker.getTransitionCount() +
+            "</yellow> transitions, <yellow>" + breaker.getRejectedCount() + "</yellow> calls rejected</gray>"
+        ));
+
+        RetentionCleaner cleaner = plugin.getServerManager().getRetentionCleaner();
+        if (cleaner.isRunning()) {
+            source.sendMessage(MessageUtil.format(
+                "<gray>Retention cleanup: <yellow>running</yellow>, <yellow>" + cleaner.getDeletedThisRun() + "</yellow> rows deleted so far</gray>"
+            ));
+        } else if (cleaner.getLastRunFinished() > 0) {
+            source.sendMessage(MessageUtil.format(
+                "<gray>Retention cleanup: last run deleted <yellow>" + cleaner.getLastRunDeleted() + "</yellow> rows</gray>"
+            ));
+        }
+
+        SchemaMigrator migrator = plugin.getMySQL().getMigrator();
+        if (migrator.isMigrating()) {
+            source.sendMessage(MessageUtil.format(
+                "<gray>Schema migration: <yellow>" + migrator.getMigratedRows() + "</yellow> rows copied so far</gray>"
+            ));
+        }
+    }
+
     private void executeCommands(List<String> commands, CommandSource source) {
         if (commands == null || commands.isEmpty()) {
             return;
@@ -149,7 +266,7 @@ public class LastServerCommand implements SimpleCommand {
         }
     }
 
-    private boolean isOnCooldown(String identifier) {
+    private boolean isOnCooldown(UUID identifier) {
         Long lastUsed = commandCooldowns.get(identifier);
         if (lastUsed == null) {
             return false;
@@ -157,13 +274,12 @@ public class LastServerCommand implements SimpleCommand {
         return System.currentTimeMillis() - lastUsed < COOLDOWN_TIME;
     }
 
-    private void setCooldown(String identifier) {
-        commandCooldowns.put(identifier, System.currentTimeMillis());
+    private void setCooldown(UUID identifier) {
+        Long now = System.currentTimeMillis();
+        commandCooldowns.put(identifier, now);
         
-        plugin.getServer().getScheduler()
-            .buildTask(plugin, () -> commandCooldowns.remove(identifier))
-            .delay(COOLDOWN_TIME + 100, TimeUnit.MILLISECONDS)
-            .schedule();
+        // Removes the entry only if it wasn't refreshed by a later use
+        plugin.getTimingWheel().schedule(identifier, now, COOLDOWN_TIME + 100, TimeUnit.MILLISECONDS, commandCooldowns::remove);
     }
 
     @Override
@@ -171,11 +287,11 @@ public class LastServerCommand implements SimpleCommand {
         String[] args = invocation.arguments();
         
         if (args.length == 0) {
-            return List.of("reload", "maintenance", "info", "help");
+            return List.of("reload", "maintenance", "info", "stats", "help");
         }
         
         if (args.length == 1) {
-            return List.of("reload", "maintenance", "info", "help").stream()
+            return List.of("reload", "maintenance", "info", "stats", "help").stream()
                 .filter(cmd -> cmd.startsWith(args[0].toLowerCase()))
                 .toList();
         }
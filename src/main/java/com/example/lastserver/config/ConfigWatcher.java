@@ -0,0 +1,85 @@
+package com.example.lastserver.config;
+
+import com.example.lastserver.LastServer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+// Reloads the configuration when config.yml changes on disk. Editors often write a file in several steps,
+// so events are collected until the file has been quiet for a moment before anything is parsed.
+public class ConfigWatcher {
+    private static final long DEBOUNCE = 750;
+
+    private final LastServer plugin;
+    private final Path directory;
+    private WatchService watchService;
+
+    public ConfigWatcher(LastServer plugin, Path directory) {
+        this.plugin = plugin;
+        this.directory = directory;
+    }
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to watch config.yml for changes, use /lastserver reload instead", e);
+            return;
+        }
+
+        Thread.ofVirtual().name("lastserver-config-watcher").start(this::watch);
+    }
+
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                plugin.getLogger().warn("Failed to close config watcher", e);
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                if (!drain(watchService.take())) {
+                    continue;
+                }
+
+                // Wait for the burst of writes to settle
+                WatchKey key;
+                while ((key = watchService.poll(DEBOUNCE, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+
+                plugin.getLogger().info("Detected a change to config.yml");
+                plugin.reload();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Shutting down
+        } catch (Exception e) {
+            plugin.getLogger().error("Config watcher stopped unexpectedly", e);
+        }
+    }
+
+    // Consumes the events on a key and reports whether any of them touched config.yml
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path path && path.getFileName().toString().equals("config.yml")) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+}
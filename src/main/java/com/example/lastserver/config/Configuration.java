@@ -8,56 +8,112 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-public class Configuration {
-    private final LastServer plugin;
-    private final Path configPath;
-    private Map<String, Object> config;
+// Immutable snapshot of config.yml. A reload builds a new one and swaps the reference in LastServer,
+// so readers on other threads always see one consistent set of settings.
+public final class Configuration {
+    // Top-level sections as parsed, kept only to tell which ones a reload changed
+    private final Map<String, Object> sections;
+    private final boolean autoReload;
     
     // MySQL settings
-    private String mysqlHost;
-    private int mysqlPort;
-    private String mysqlDatabase;
-    private String mysqlUsername;
-    private String mysqlPassword;
-    private int poolSize;
+    private final String mysqlHost;
+    private final int mysqlPort;
+    private final String mysqlDatabase;
+    private final String mysqlUsername;
+    private final String mysqlPassword;
+    private final int poolSize;
+    
+    // Write-behind settings
+    private final boolean writeBehindEnabled;
+    private final int writeBehindBatchSize;
+    private final long writeBehindFlushInterval;
+    private final long writeBehindRefreshInterval;
+    
+    // Journal settings
+    private final boolean journalEnabled;
+    private final int journalSegmentSize;
+    private final int journalMaxSegments;
+    
+    // Known player filter settings
+    private final boolean knownPlayersEnabled;
+    private final boolean knownPlayersSingleProxy;
+    private final double knownPlayersFalsePositiveRate;
+    private final long knownPlayersRebuildInterval;
+    
+    // Mirror settings
+    private final boolean mirrorEnabled;
+    private final long mirrorSnapshotInterval;
+    
+    // Player cache settings
+    private final int playerCacheMaxSize;
+    private final long playerCacheTtl;
+    
+    // Circuit breaker settings
+    private final boolean circuitBreakerEnabled;
+    private final int circuitBreakerWindowSize;
+    private final int circuitBreakerMinimumCalls;
+    private final int circuitBreakerFailureRate;
+    private final long circuitBreakerSlowCall;
+    private final int circuitBreakerSlowCallRate;
+    private final long circuitBreakerOpenDuration;
+    
+    // Health check settings
+    private final long healthCheckInterval;
+    private final long healthCheckTimeout;
+    private final long healthCheckJitter;
+    private final int healthCheckDownAfter;
+    
+    // Retention settings
+    private final int retentionDays;
+    private final int cleanupChunkSize;
+    private final long cleanupChunkPause;
+    private final int cleanupMaxLoginRate;
     
     // Server settings
-    private String fallbackServer;
-    private List<String> blacklistedServers;
-    private int inactiveDays;
-    private String bypassPermission;
-    private String firstJoinServer;
+    private final String fallbackServer;
+    private final Map<String, FallbackPool> fallbackPools;
+    private final Set<String> blacklistedServers;
+    private final int inactiveDays;
+    private final Map<String, Integer> serverInactiveDays;
+    private final String bypassPermission;
+    private final String firstJoinServer;
     
     // Maintenance settings
-    private volatile boolean maintenanceEnabled;
-    private String maintenanceServer;
-    private List<String> onEnableCommands;
-    private List<String> onDisableCommands;
+    private final boolean maintenanceEnabled;
+    private final String maintenanceServer;
+    private final List<String> onEnableCommands;
+    private final List<String> onDisableCommands;
 
     // Discord settings
-    private boolean discordEnabled;
-    private String discordWebhookUrl;
-    private String firstTimeAnnounceServer;
-    private Map<String, String> serverDisplayNames;
+    private final boolean discordEnabled;
+    private final String discordWebhookUrl;
+    private final String firstTimeAnnounceServer;
+    private final int discordQueueSize;
+    private final long discordMaxAge;
+    private final long discordAggregateWindow;
+    private final boolean discordSpoolEnabled;
+    private final int discordSpoolMaxSegments;
+    private final Map<String, String> serverDisplayNames;
     
     // Messages
-    private Map<String, String> messages;
+    private final Map<String, String> messages;
     
     // Debug
-    private boolean debug;
+    private final boolean debug;
 
-    public Configuration(LastServer plugin, Path dataDirectory) {
-        this.plugin = plugin;
-        this.configPath = dataDirectory.resolve("config.yml");
-        this.messages = new HashMap<>();
-    }
-
-    @SuppressWarnings("unchecked")
-    public boolean load() {
+    // Reads config.yml, copying the default first if needed. Returns null if it can't be read or parsed.
+    public static Configuration load(LastServer plugin, Path dataDirectory) {
+        Path configPath = dataDirectory.resolve("config.yml");
         try {
             // Create config directory if it doesn't exist
             if (!Files.exists(configPath.getParent())) {
@@ -66,7 +122,7 @@ public class Configuration {
             
             // Copy default config if it doesn't exist
             if (!Files.exists(configPath)) {
-                try (InputStream in = getClass().getResourceAsStream("/config.yml")) {
+                try (InputStream in = Configuration.class.getResourceAsStream("/config.yml")) {
                     if (in != null) {
                         Files.copy(in, configPath);
                     }
@@ -75,58 +131,229 @@ public class Configuration {
             
             // Load config
             Yaml yaml = new Yaml();
+            Map<String, Object> config;
             try (InputStream in = Files.newInputStream(configPath)) {
                 config = yaml.load(in);
             }
             
-            // Parse MySQL settings
-            Map<String, Object> mysql = (Map<String, Object>) config.get("mysql");
-            mysqlHost = (String) mysql.get("host");
-            mysqlPort = (Integer) mysql.get("port");
-            mysqlDatabase = (String) mysql.get("database");
-            mysqlUsername = (String) mysql.get("username");
-            mysqlPassword = (String) mysql.get("password");
-            poolSize = (Integer) mysql.get("pool-size");
-            
-            // Parse server settings
-            fallbackServer = (String) config.get("fallback-server");
-            blacklistedServers = (List<String>) config.getOrDefault("blacklisted-servers", Collections.emptyList());
-            inactiveDays = (Integer) config.getOrDefault("inactive-days", 5);
-            bypassPermission = (String) config.get("bypass-permission");
-            firstJoinServer = (String) config.get("first-join-server");
-            
-            // Parse maintenance settings
-            Map<String, Object> maintenance = (Map<String, Object>) config.get("maintenance");
-            maintenanceEnabled = (Boolean) maintenance.getOrDefault("enabled", false);
-            maintenanceServer = (String) maintenance.get("maintenance-server");
-            onEnableCommands = (List<String>) maintenance.getOrDefault("on-enable-commands", Collections.emptyList());
-            onDisableCommands = (List<String>) maintenance.getOrDefault("on-disable-commands", Collections.emptyList());
-
-            Map<String, Object> discord = (Map<String, Object>) config.getOrDefault("discord", new HashMap<>());
-            discordEnabled = (Boolean) discord.getOrDefault("enabled", false);
-            discordWebhookUrl = (String) discord.getOrDefault("webhook-url", "");
-            firstTimeAnnounceServer = (String) discord.getOrDefault("first-time-announce-server", "");
-            serverDisplayNames = (Map<String, String>) discord.getOrDefault("server-display-names", new HashMap<>());
-            
-            // Parse messages
-            Map<String, String> msgConfig = (Map<String, String>) config.get("messages");
-            messages.clear();
-            messages.putAll(msgConfig);
-            
-            // Parse debug
-            debug = (Boolean) config.get("debug");
-            
-            return true;
+            return new Configuration(plugin, config);
         } catch (IOException e) {
             plugin.getLogger().error("Failed to load configuration", e);
-            return false;
+            return null;
         } catch (Exception e) {
             plugin.getLogger().error("Failed to parse configuration", e);
-            return false;
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Configuration(LastServer plugin, Map<String, Object> config) {
+        sections = Collections.unmodifiableMap(new HashMap<>(config));
+        autoReload = (Boolean) config.getOrDefault("auto-reload", true);
+        
+        // Parse MySQL settings
+        Map<String, Object> mysql = (Map<String, Object>) config.get("mysql");
+        mysqlHost = (String) mysql.get("host");
+        mysqlPort = (Integer) mysql.get("port");
+        mysqlDatabase = (String) mysql.get("database");
+        mysqlUsername = (String) mysql.get("username");
+        mysqlPassword = (String) mysql.get("password");
+        poolSize = (Integer) mysql.get("pool-size");
+        require(mysqlHost != null && !mysqlHost.isBlank(), "mysql.host must be set");
+        require(mysqlPort > 0 && mysqlPort <= 65535, "mysql.port must be between 1 and 65535");
+        require(mysqlDatabase != null && !mysqlDatabase.isBlank(), "mysql.database must be set");
+        require(poolSize > 0, "mysql.pool-size must be at least 1");
+        
+        // Parse write-behind settings
+        Map<String, Object> writeBehind = (Map<String, Object>) config.getOrDefault("write-behind", new HashMap<>());
+        writeBehindEnabled = (Boolean) writeBehind.getOrDefault("enabled", true);
+        writeBehindBatchSize = Math.max(1, (Integer) writeBehind.getOrDefault("batch-size", 100));
+        writeBehindFlushInterval = Math.max(50, ((Number) writeBehind.getOrDefault("flush-interval-ms", 1000)).longValue());
+        writeBehindRefreshInterval = TimeUnit.MINUTES.toMillis(((Number) writeBehind.getOrDefault("refresh-interval-minutes", 60)).longValue());
+        
+        // Parse journal settings
+        Map<String, Object> journal = (Map<String, Object>) config.getOrDefault("journal", new HashMap<>());
+        journalEnabled = (Boolean) journal.getOrDefault("enabled", true);
+        journalSegmentSize = Math.max(64, (Integer) journal.getOrDefault("segment-size-kb", 1024)) * 1024;
+        journalMaxSegments = Math.max(2, (Integer) journal.getOrDefault("max-segments", 64));
+        
+        // Parse known player filter settings
+        Map<String, Object> knownPlayers = (Map<String, Object>) config.getOrDefault("known-players", new HashMap<>());
+        knownPlayersEnabled = (Boolean) knownPlayers.getOrDefault("enabled", true);
+        knownPlayersSingleProxy = (Boolean) knownPlayers.getOrDefault("single-proxy", true);
+        knownPlayersFalsePositiveRate = Math.min(0.5, Math.max(0.0001, ((Number) knownPlayers.getOrDefault("false-positive-rate", 0.01)).doubleValue()));
+        knownPlayersRebuildInterval = TimeUnit.HOURS.toMillis(Math.max(1, ((Number) knownPlayers.getOrDefault("rebuild-hours", 6)).longValue()));
+        
+        // Parse mirror settings
+        Map<String, Object> mirror = (Map<String, Object>) config.getOrDefault("mirror", new HashMap<>());
+        mirrorEnabled = (Boolean) mirror.getOrDefault("enabled", false);
+        mirrorSnapshotInterval = TimeUnit.MINUTES.toMillis(Math.max(1, ((Number) mirror.getOrDefault("snapshot-minutes", 30)).longValue()));
+        
+        // Parse player cache settings
+        Map<String, Object> playerCache = (Map<String, Object>) config.getOrDefault("player-cache", new HashMap<>());
+        playerCacheMaxSize = (Integer) playerCache.getOrDefault("max-size", 10000);
+        playerCacheTtl = TimeUnit.MINUTES.toMillis(((Number) playerCache.getOrDefault("ttl-minutes", 10)).longValue());
+        
+        // Parse circuit breaker settings
+        Map<String, Object> breaker = (Map<String, Object>) config.getOrDefault("circuit-breaker", new HashMap<>());
+        circuitBreakerEnabled = (Boolean) breaker.getOrDefault("enabled", true);
+        circuitBreakerWindowSize = Math.max(1, (Integer) breaker.getOrDefault("window-size", 20));
+        circuitBreakerMinimumCalls = Math.max(1, (Integer) breaker.getOrDefault("minimum-calls", 10));
+        circuitBreakerFailureRate = (Integer) breaker.getOrDefault("failure-rate-threshold", 50);
+        circuitBreakerSlowCall = ((Number) breaker.getOrDefault("slow-call-ms", 500)).longValue();
+        circuitBreakerSlowCallRate = (Integer) breaker.getOrDefault("slow-call-rate-threshold", 80);
+        circuitBreakerOpenDuration = TimeUnit.SECONDS.toMillis(((Number) breaker.getOrDefault("open-duration-seconds", 10)).longValue());
+        
+        // Parse health check settings
+        Map<String, Object> healthCheck = (Map<String, Object>) config.getOrDefault("health-check", new HashMap<>());
+        healthCheckInterval = TimeUnit.SECONDS.toMillis(Math.max(1, ((Number) healthCheck.getOrDefault("interval-seconds", 10)).longValue()));
+        healthCheckTimeout = Math.max(100, ((Number) healthCheck.getOrDefault("timeout-ms", 3000)).longValue());
+        healthCheckJitter = Math.min(healthCheckInterval, Math.max(0, ((Number) healthCheck.getOrDefault("jitter-ms", 2000)).longValue()));
+        healthCheckDownAfter = Math.max(1, (Integer) healthCheck.getOrDefault("down-after-failures", 2));
+        
+        // Parse retention settings
+        Map<String, Object> retention = (Map<String, Object>) config.getOrDefault("retention", new HashMap<>());
+        retentionDays = Math.max(1, (Integer) retention.getOrDefault("days", 30));
+        cleanupChunkSize = Math.max(1, (Integer) retention.getOrDefault("chunk-size", 500));
+        cleanupChunkPause = Math.max(10, ((Number) retention.getOrDefault("chunk-pause-ms", 200)).longValue());
+        cleanupMaxLoginRate = (Integer) retention.getOrDefault("max-logins-per-second", 5);
+        
+        // Parse server settings, checking server names once here instead of on every login
+        fallbackServer = serverName(plugin, "fallback-server", config.get("fallback-server"));
+        Set<String> blacklist = new HashSet<>();
+        for (String name : (List<String>) config.getOrDefault("blacklisted-servers", Collections.emptyList())) {
+            if (name != null && !name.trim().isEmpty()) {
+                blacklist.add(name.trim());
+            }
+        }
+        blacklistedServers = Collections.unmodifiableSet(blacklist);
+        fallbackPools = parsePools(plugin, (Map<String, Map<String, Object>>) config.getOrDefault("fallback-pools", new HashMap<>()));
+        inactiveDays = (Integer) config.getOrDefault("inactive-days", 5);
+        require(inactiveDays > 0, "inactive-days must be at least 1");
+        serverInactiveDays = Map.copyOf((Map<String, Integer>) config.getOrDefault("server-inactive-days", new HashMap<>()));
+        bypassPermission = (String) config.get("bypass-permission");
+        firstJoinServer = serverName(plugin, "first-join-server", config.get("first-join-server"));
+        
+        // Parse maintenance settings
+        Map<String, Object> maintenance = (Map<String, Object>) config.get("maintenance");
+        maintenanceEnabled = (Boolean) maintenance.getOrDefault("enabled", false);
+        maintenanceServer = serverName(plugin, "maintenance.maintenance-server", maintenance.get("maintenance-server"));
+        onEnableCommands = List.copyOf((List<String>) maintenance.getOrDefault("on-enable-commands", Collections.emptyList()));
+        onDisableCommands = List.copyOf((List<String>) maintenance.getOrDefault("on-disable-commands", Collections.emptyList()));
+
+        Map<String, Object> discord = (Map<String, Object>) config.getOrDefault("discord", new HashMap<>());
+        discordEnabled = (Boolean) discord.getOrDefault("enabled", false);
+        discordWebhookUrl = (String) discord.getOrDefault("webhook-url", "");
+        firstTimeAnnounceServer = (String) discord.getOrDefault("first-time-announce-server", "");
+        discordQueueSize = Math.max(10, (Integer) discord.getOrDefault("queue-size", 1000));
+        discordAggregateWindow = TimeUnit.SECONDS.toMillis(Math.max(0, ((Number) discord.getOrDefault("aggregate-seconds", 5)).longValue()));
+        discordMaxAge = TimeUnit.MINUTES.toMillis(Math.max(1, ((Number) discord.getOrDefault("max-age-minutes", 1440)).longValue()));
+        Map<String, Object> spool = (Map<String, Object>) discord.getOrDefault("spool", new HashMap<>());
+        discordSpoolEnabled = (Boolean) spool.getOrDefault("enabled", true);
+        discordSpoolMaxSegments = Math.max(2, (Integer) spool.getOrDefault("max-segments", 16));
+        Map<String, String> displayNames = new HashMap<>();
+        ((Map<String, String>) discord.getOrDefault("server-display-names", new HashMap<>())).forEach((name, display) -> {
+            if (name != null && display != null && !display.isBlank()) {
+                displayNames.put(name, display);
+            }
+        });
+        serverDisplayNames = Collections.unmodifiableMap(displayNames);
+        
+        // Parse messages
+        messages = Map.copyOf((Map<String, String>) config.get("messages"));
+        
+        // Parse debug
+        debug = (Boolean) config.get("debug");
+        
+        require(fallbackServer != null || firstJoinServer != null, "fallback-server or first-join-server must name a server");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, FallbackPool> parsePools(LastServer plugin, Map<String, Map<String, Object>> section) {
+        Map<String, FallbackPool> pools = new HashMap<>();
+        section.forEach((poolName, poolSection) -> {
+            String modeName = ((String) poolSection.getOrDefault("mode", "least-loaded")).trim().toUpperCase().replace('-', '_');
+            FallbackPool.Mode mode = FallbackPool.Mode.valueOf(modeName);
+            int virtualNodes = Math.max(1, (Integer) poolSection.getOrDefault("virtual-nodes", 160));
+            
+            List<FallbackPool.Member> members = new ArrayList<>();
+            for (Map<String, Object> entry : (List<Map<String, Object>>) poolSection.getOrDefault("servers", Collections.emptyList())) {
+                String server = serverName(plugin, "fallback-pools." + poolName, entry.get("server"));
+                if (server != null) {
+                    members.add(new FallbackPool.Member(
+                        server,
+                        Math.max(0, (Integer) entry.getOrDefault("capacity", 0)),
+                        Math.max(1, (Integer) entry.getOrDefault("weight", 1))
+                    ));
+                }
+            }
+            require(!members.isEmpty(), "fallback pool " + poolName + " has no valid servers");
+            pools.put(poolName, new FallbackPool(poolName, mode, virtualNodes, List.copyOf(members)));
+        });
+        return Collections.unmodifiableMap(pools);
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
         }
     }
 
+    // Trims a configured server name, or warns and returns null if it can never match a registered server
+    private static String serverName(LastServer plugin, String key, Object value) {
+        if (value == null) {
+            return null;
+        }
+        
+        String trimmed = value.toString().trim();
+        if (trimmed.isEmpty() || trimmed.length() > 50 || !trimmed.matches("^[a-zA-Z0-9_-]+$")) {
+            plugin.getLogger().warn("Ignoring invalid server name for {}: '{}'", key, value);
+            return null;
+        }
+        return trimmed;
+    }
+
+    // Names the top-level sections that differ from the previous snapshot
+    public List<String> getChangedSections(Configuration previous) {
+        Set<String> keys = new LinkedHashSet<>(sections.keySet());
+        keys.addAll(previous.sections.keySet());
+        
+        List<String> changed = new ArrayList<>();
+        for (String key : keys) {
+            if (!Objects.equals(sections.get(key), previous.sections.get(key))) {
+                changed.add(key);
+            }
+        }
+        return changed;
+    }
+
+    // These settings with the mysql section of another configuration, published by a reload until its new connection
+    // is up. If that fails it stays, and since it still differs from config.yml the next reload tries again.
+    public Configuration withMysqlSettingsOf(LastServer plugin, Configuration other) {
+        Map<String, Object> config = new HashMap<>(sections);
+        config.put("mysql", other.sections.get("mysql"));
+        return new Configuration(plugin, config);
+    }
+
+    // True if both point at the same schema, so cached server ids stay valid
+    public boolean hasSameDatabase(Configuration other) {
+        return Objects.equals(mysqlHost, other.mysqlHost) &&
+            mysqlPort == other.mysqlPort &&
+            Objects.equals(mysqlDatabase, other.mysqlDatabase);
+    }
+
+    // True if an existing pool can keep serving; the pool size can be changed without reconnecting
+    public boolean hasSameConnectionSettings(Configuration other) {
+        return hasSameDatabase(other) &&
+            Objects.equals(mysqlUsername, other.mysqlUsername) &&
+            Objects.equals(mysqlPassword, other.mysqlPassword);
+    }
+
     // Getters
+    public boolean isAutoReload() {
+        return autoReload;
+    }
+
     public String getMysqlHost() {
         return mysqlHost;
     }
@@ -151,18 +378,151 @@ public class Configuration {
         return poolSize;
     }
 
+    public boolean isWriteBehindEnabled() {
+        return writeBehindEnabled;
+    }
+
+    public int getWriteBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+
+    public long getWriteBehindFlushInterval() {
+        return writeBehindFlushInterval;
+    }
+
+    public long getWriteBehindRefreshInterval() {
+        return writeBehindRefreshInterval;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public int getJournalSegmentSize() {
+        return journalSegmentSize;
+    }
+
+    public int getJournalMaxSegments() {
+        return journalMaxSegments;
+    }
+
+    public boolean isKnownPlayersEnabled() {
+        return knownPlayersEnabled;
+    }
+
+    public boolean isKnownPlayersSingleProxy() {
+        return knownPlayersSingleProxy;
+    }
+
+    public double getKnownPlayersFalsePositiveRate() {
+        return knownPlayersFalsePositiveRate;
+    }
+
+    public long getKnownPlayersRebuildInterval() {
+        return knownPlayersRebuildInterval;
+    }
+
+    public boolean isMirrorEnabled() {
+        return mirrorEnabled;
+    }
+
+    public long getMirrorSnapshotInterval() {
+        return mirrorSnapshotInterval;
+    }
+
+    public int getPlayerCacheMaxSize() {
+        return playerCacheMaxSize;
+    }
+
+    public long getPlayerCacheTtl() {
+        return playerCacheTtl;
+    }
+
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    public int getCircuitBreakerWindowSize() {
+        return circuitBreakerWindowSize;
+    }
+
+    public int getCircuitBreakerMinimumCalls() {
+        return circuitBreakerMinimumCalls;
+    }
+
+    public int getCircuitBreakerFailureRate() {
+        return circuitBreakerFailureRate;
+    }
+
+    public long getCircuitBreakerSlowCall() {
+        return circuitBreakerSlowCall;
+    }
+
+    public int getCircuitBreakerSlowCallRate() {
+        return circuitBreakerSlowCallRate;
+    }
+
+    public long getCircuitBreakerOpenDuration() {
+        return circuitBreakerOpenDuration;
+    }
+
+    public long getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public long getHealthCheckTimeout() {
+        return healthCheckTimeout;
+    }
+
+    public long getHealthCheckJitter() {
+        return healthCheckJitter;
+    }
+
+    public int getHealthCheckDownAfter() {
+        return healthCheckDownAfter;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public int getCleanupChunkSize() {
+        return cleanupChunkSize;
+    }
+
+    public long getCleanupChunkPause() {
+        return cleanupChunkPause;
+    }
+
+    public int getCleanupMaxLoginRate() {
+        return cleanupMaxLoginRate;
+    }
+
     public String getFallbackServer() {
         return fallbackServer;
     }
 
-    public List<String> getBlacklistedServers() {
+    // Pool with this name, or null if the name refers to a single server
+    public FallbackPool getFallbackPool(String name) {
+        return name != null ? fallbackPools.get(name) : null;
+    }
+
+    public Set<String> getBlacklistedServers() {
         return blacklistedServers;
     }
 
+    public boolean isBlacklisted(String serverName) {
+        return serverName != null && blacklistedServers.contains(serverName);
+    }
+
     public int getInactiveDays() {
         return inactiveDays;
     }
 
+    public int getInactiveDays(String serverName) {
+        return serverInactiveDays.getOrDefault(serverName, inactiveDays);
+    }
+
     public String getBypassPermission() {
         return bypassPermission;
     }
@@ -179,10 +539,35 @@ public class Configuration {
         return firstTimeAnnounceServer;
     }
 
+    public int getDiscordQueueSize() {
+        return discordQueueSize;
+    }
+
+    // 0 when aggregation is off
+    public long getDiscordAggregateWindow() {
+        return discordAggregateWindow;
+    }
+
+    public long getDiscordMaxAge() {
+        return discordMaxAge;
+    }
+
+    public boolean isDiscordSpoolEnabled() {
+        return discordSpoolEnabled;
+    }
+
+    public int getDiscordSpoolMaxSegments() {
+        return discordSpoolMaxSegments;
+    }
+
     public Map<String, String> getServerDisplayNames() {
         return serverDisplayNames;
     }
 
+    public String getServerDisplayName(String serverName) {
+        return serverDisplayNames.getOrDefault(serverName, serverName);
+    }
+
     public String getFirstJoinServer() {
         return firstJoinServer;
     }
@@ -191,10 +576,6 @@ public class Configuration {
         return maintenanceEnabled;
     }
 
-    public void setMaintenanceEnabled(boolean enabled) {
-        this.maintenanceEnabled = enabled;
-    }
-
     public String getMaintenanceServer() {
         return maintenanceServer;
     }
@@ -0,0 +1,18 @@
+package com.example.lastserver.config;
+
+import java.util.List;
+
+// A named group of interchangeable servers that fallback routing spreads players across.
+// capacity 0 means "use the max player count the server reports".
+public record FallbackPool(String name, Mode mode, int virtualNodes, List<Member> members) {
+
+    public enum Mode {
+        // Whichever member has the most room right now
+        LEAST_LOADED,
+        // The same member for the same player every time, as long as it is up
+        CONSISTENT_HASH
+    }
+
+    public record Member(String server, int capacity, int weight) {
+    }
+}
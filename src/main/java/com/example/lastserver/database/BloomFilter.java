@@ -0,0 +1,69 @@
+package com.example.lastserver.database;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed size Bloom filter over UUIDs. Bits are set with CAS so saves can add players while logins read.
+// The k probe positions come from two hashes of the UUID (Kirsch-Mitzenmacher), so no extra hashing per probe.
+class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    private BloomFilter(long bitCount, int hashCount) {
+        this.words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    // Sized for the expected number of players at the given false positive rate
+    static BloomFilter create(long expected, double falsePositiveRate) {
+        long n = Math.max(1, expected);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = Math.max(64, Math.min(bits, (long) Integer.MAX_VALUE * 64));
+        int hashes = (int) Math.max(1, Math.round((double) bits / n * Math.log(2)));
+        return new BloomFilter(bits, hashes);
+    }
+
+    void put(long msb, long lsb) {
+        long h1 = mix(msb ^ mix(lsb));
+        long h2 = mix(lsb + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    boolean mightContain(long msb, long lsb) {
+        long h1 = mix(msb ^ mix(lsb));
+        long h2 = mix(lsb + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getSizeBytes() {
+        return words.length() * 8L;
+    }
+
+    // Murmur3 finalizer
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
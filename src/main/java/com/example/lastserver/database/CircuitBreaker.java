@@ -0,0 +1,213 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stops sending work to MySQL once too many recent calls failed or were slow, then lets a single probe through
+// after a cool-down to see if it has recovered. Callers fail fast while it is open instead of waiting on timeouts.
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // Permits handed out by acquire(); a half-open probe gets its own positive id
+    public static final long REJECTED = -1;
+    public static final long PERMITTED = 0;
+
+    private final LastServer plugin;
+    private boolean[] failed;
+    private boolean[] slow;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong transitions = new AtomicLong();
+    private int index;
+    private int recorded;
+    private int failedCount;
+    private int slowCount;
+    private State state = State.CLOSED;
+    private long stateChangedAt = System.currentTimeMillis();
+    // Id of the call that was let through as the half-open probe, 0 if none is out
+    private long probeId;
+    private long lastProbeId;
+
+    public CircuitBreaker(LastServer plugin, int windowSize) {
+        this.plugin = plugin;
+        this.failed = new boolean[Math.max(1, windowSize)];
+        this.slow = new boolean[Math.max(1, windowSize)];
+    }
+
+    // Returns REJECTED, or a permit to pass to recordSuccess/recordFailure once the call is done
+    public synchronized long acquire() {
+        if (!plugin.getConfiguration().isCircuitBreakerEnabled()) {
+            // Disabled at runtime while open; don't leave it stuck there
+            if (state != State.CLOSED) {
+                reset();
+                transition(State.CLOSED);
+            }
+            return PERMITTED;
+        }
+
+        if (state == State.CLOSED) {
+            return PERMITTED;
+        }
+
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - stateChangedAt < plugin.getConfiguration().getCircuitBreakerOpenDuration()) {
+                rejected.incrementAndGet();
+                return REJECTED;
+            }
+            transition(State.HALF_OPEN);
+        }
+
+        // Only one probe at a time while half-open
+        if (probeId != 0) {
+            rejected.incrementAndGet();
+            return REJECTED;
+        }
+        probeId = ++lastProbeId;
+        return probeId;
+    }
+
+    // Whether acquire() would currently hand out a permit, without taking one
+    public synchronized boolean wouldAllow() {
+        if (!plugin.getConfiguration().isCircuitBreakerEnabled() || state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            return System.currentTimeMillis() - stateChangedAt >= plugin.getConfiguration().getCircuitBreakerOpenDuration();
+        }
+        return probeId == 0;
+    }
+
+    public synchronized void recordSuccess(long permit, long durationNanos) {
+        if (!shouldRecord(permit)) {
+            return;
+        }
+        boolean isSlow = TimeUnit.NANOSECONDS.toMillis(durationNanos) >= plugin.getConfiguration().getCircuitBreakerSlowCall();
+
+        if (state == State.HALF_OPEN) {
+            probeId = 0;
+            if (isSlow) {
+                transition(State.OPEN);
+            } else {
+                reset();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+
+        record(false, isSlow);
+    }
+
+    public synchronized void recordFailure(long permit) {
+        if (!shouldRecord(permit)) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            probeId = 0;
+            transition(State.OPEN);
+            return;
+        }
+
+        record(true, false);
+    }
+
+    // For a permit whose call never ran. A half-open probe that didn't go out lets the next call probe instead.
+    public synchronized void release(long permit) {
+        if (state == State.HALF_OPEN && permit == probeId) {
+            probeId = 0;
+        }
+    }
+
+    // Starts a fresh window of the new size; the current state is kept
+    public synchronized void resize(int windowSize) {
+        failed = new boolean[Math.max(1, windowSize)];
+        slow = new boolean[Math.max(1, windowSize)];
+        reset();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getStateChangedAt() {
+        return stateChangedAt;
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getTransitionCount() {
+        return transitions.get();
+    }
+
+    // Nothing is counted while disabled. While open or half-open, only the probe's own outcome matters;
+    // calls that started before the trip finishing late say nothing about whether MySQL has recovered.
+    private boolean shouldRecord(long permit) {
+        if (!plugin.getConfiguration().isCircuitBreakerEnabled()) {
+            return false;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        return state == State.HALF_OPEN && permit == probeId;
+    }
+
+    private void record(boolean isFailure, boolean isSlow) {
+        if (recorded == failed.length) {
+            // Window is full, forget the oldest outcome
+            if (failed[index]) {
+                failedCount--;
+            }
+            if (slow[index]) {
+                slowCount--;
+            }
+        } else {
+            recorded++;
+        }
+
+        failed[index] = isFailure;
+        slow[index] = isSlow;
+        if (isFailure) {
+            failedCount++;
+        }
+        if (isSlow) {
+            slowCount++;
+        }
+        index = (index + 1) % failed.length;
+
+        if (state == State.CLOSED && recorded >= Math.min(failed.length, plugin.getConfiguration().getCircuitBreakerMinimumCalls())) {
+            int failureRate = failedCount * 100 / recorded;
+            int slowRate = slowCount * 100 / recorded;
+            if (failureRate >= plugin.getConfiguration().getCircuitBreakerFailureRate() ||
+                slowRate >= plugin.getConfiguration().getCircuitBreakerSlowCallRate()) {
+                plugin.getLogger().warn("Database circuit breaker tripped ({}% failed, {}% slow over the last {} calls)",
+                    failureRate, slowRate, recorded);
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    private void reset() {
+        index = 0;
+        recorded = 0;
+        failedCount = 0;
+        slowCount = 0;
+        for (int i = 0; i < failed.length; i++) {
+            failed[i] = false;
+            slow[i] = false;
+        }
+    }
+
+    private void transition(State next) {
+        if (state == next) {
+            return;
+        }
+
+        plugin.getLogger().warn("Database circuit breaker: {} -> {}", state, next);
+        state = next;
+        stateChangedAt = System.currentTimeMillis();
+        transitions.incrementAndGet();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.lastserver.database;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs blocking JDBC work on virtual threads, gated so no more tasks run at once than the pool has connections
+public class DatabaseExecutor implements Executor {
+    private final ExecutorService executor;
+    private final ResizableSemaphore gate;
+    private final AtomicInteger maxConcurrency;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public DatabaseExecutor(int maxConcurrency) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("lastserver-db-", 0).factory());
+        this.gate = new ResizableSemaphore(Math.max(1, maxConcurrency));
+        this.maxConcurrency = new AtomicInteger(Math.max(1, maxConcurrency));
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+
+        try {
+            executor.execute(() -> run(task, submitted));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void run(Runnable task, long submitted) {
+        boolean acquired = false;
+        try {
+            gate.acquire();
+            acquired = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            queued.decrementAndGet();
+        }
+
+        // Interrupted while waiting, which only happens on shutdown. Run it anyway so whoever waits on its result
+        // isn't left hanging; with the interrupt still set, getting a connection usually fails right away.
+        if (!acquired) {
+            task.run();
+            return;
+        }
+
+        long waited = System.nanoTime() - submitted;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        active.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            active.decrementAndGet();
+            completed.incrementAndGet();
+            gate.release();
+        }
+    }
+
+    // Follows pool-size changes without dropping tasks that already hold a permit
+    public void resize(int newMaxConcurrency) {
+        int target = Math.max(1, newMaxConcurrency);
+        int previous = maxConcurrency.getAndSet(target);
+        if (target > previous) {
+            gate.release(target - previous);
+        } else if (target < previous) {
+            gate.reducePermits(previous - target);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getAverageWaitMillis() {
+        long count = completed.get() + active.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count);
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    private static class ResizableSemaphore extends Semaphore {
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+import com.example.lastserver.config.FallbackPool;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+// Picks the least loaded healthy server for fallback routing. Load is the larger of the last pinged player count
+// and the players this proxy has connected, plus players routed there in the last few seconds that haven't
+// shown up in either yet, so a burst of logins doesn't all land on the same instance.
+public class FallbackRouter {
+    private static final long RECENT_WINDOW = TimeUnit.SECONDS.toMillis(10);
+    private static final int DEFAULT_CAPACITY = 100;
+
+    private final LastServer plugin;
+    private final ServerHealthMonitor healthMonitor;
+    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Long>> recentAssignments = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<FallbackPool, HashRing> rings = new ConcurrentHashMap<>();
+
+    public FallbackRouter(LastServer plugin, ServerHealthMonitor healthMonitor) {
+        this.plugin = plugin;
+        this.healthMonitor = healthMonitor;
+    }
+
+    // Resolves a fallback pool or a single server name to a server that can take another player, or null
+    public RegisteredServer select(String target, UUID uuid) {
+        if (target == null) {
+            return null;
+        }
+
+        FallbackPool pool = plugin.getConfiguration().getFallbackPool(target);
+        if (pool == null) {
+            return pick(List.of(new FallbackPool.Member(target, 0, 1)));
+        }
+        if (pool.mode() == FallbackPool.Mode.CONSISTENT_HASH && uuid != null) {
+            return pickByHash(pool, uuid);
+        }
+        return pick(pool.members());
+    }
+
+    // Rings are built per configuration snapshot, drop the ones for pools that no longer exist
+    public void clearRings() {
+        rings.clear();
+    }
+
+    // Last resort when no configured target can take the player: any registered server that isn't blacklisted
+    public RegisteredServer selectAny() {
+        List<FallbackPool.Member> members = new ArrayList<>();
+        for (RegisteredServer server : plugin.getServer().getAllServers()) {
+            String name = server.getServerInfo().getName();
+            if (!plugin.getConfiguration().isBlacklisted(name)) {
+                members.add(new FallbackPool.Member(name, 0, 1));
+            }
+        }
+        return pick(members);
+    }
+
+    // Full according to its last ping or this proxy's own count
+    public boolean isFull(RegisteredServer server) {
+        ServerHealth health = healthMonitor.getHealth(server.getServerInfo().getName());
+        return health.maxPlayers() > 0 && load(server, health) >= health.maxPlayers();
+    }
+
+    // Walks the player's ring order and takes the first member that is up and has room
+    private RegisteredServer pickByHash(FallbackPool pool, UUID uuid) {
+        HashRing ring = rings.computeIfAbsent(pool, HashRing::new);
+
+        for (int index : ring.preferenceOrder(uuid)) {
+            FallbackPool.Member member = ring.member(index);
+            RegisteredServer server = plugin.getServer().getServer(member.server()).orElse(null);
+            if (server != null && canAccept(server, member)) {
+                assigned(server);
+                return server;
+            }
+        }
+        return null;
+    }
+
+    private boolean canAccept(RegisteredServer server, FallbackPool.Member member) {
+        // Servers the monitor hasn't checked yet are assumed up
+        ServerHealth health = healthMonitor.getHealth(member.server());
+        if (health.isKnown() && !health.online()) {
+            return false;
+        }
+
+        int capacity = member.capacity() > 0 ? member.capacity() : health.maxPlayers();
+        return capacity <= 0 || load(server, health) < capacity;
+    }
+
+    private void assigned(RegisteredServer server) {
+        recentAssignments.computeIfAbsent(server.getServerInfo().getName(), name -> new ConcurrentLinkedQueue<>())
+            .add(System.currentTimeMillis());
+    }
+
+    private RegisteredServer pick(List<FallbackPool.Member> members) {
+        RegisteredServer best = null;
+        double bestScore = Double.MAX_VALUE;
+
+        for (FallbackPool.Member member : members) {
+            RegisteredServer server = plugin.getServer().getServer(member.server()).orElse(null);
+            if (server == null || !canAccept(server, member)) {
+                continue;
+            }
+
+            ServerHealth health = healthMonitor.getHealth(member.server());
+            int capacity = member.capacity() > 0 ? member.capacity() : health.maxPlayers();
+            double score = (load(server, health) + 1.0) / ((capacity > 0 ? capacity : DEFAULT_CAPACITY) * (double) member.weight());
+            if (score < bestScore) {
+                best = server;
+                bestScore = score;
+            }
+        }
+
+        if (best != null) {
+            assigned(best);
+        }
+        return best;
+    }
+
+    private int load(RegisteredServer server, ServerHealth health) {
+        int players = Math.max(health.playersOnline(), server.getPlayersConnected().size());
+        return players + recentCount(server.getServerInfo().getName());
+    }
+
+    private int recentCount(String serverName) {
+        ConcurrentLinkedQueue<Long> recent = recentAssignments.get(serverName);
+        if (recent == null) {
+            return 0;
+        }
+
+        long cutoff = System.currentTimeMillis() - RECENT_WINDOW;
+        Long oldest;
+        while ((oldest = recent.peek()) != null && oldest < cutoff) {
+            recent.poll();
+        }
+        return recent.size();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.config.FallbackPool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+// Consistent hash ring over the members of a pool. Each member gets virtualNodes x weight points on the ring,
+// and a player belongs to the first point at or after the hash of their UUID. Removing a member only moves
+// the players that were on its points.
+class HashRing {
+    private final List<FallbackPool.Member> members;
+    private final long[] points;
+    private final int[] owners;
+
+    HashRing(FallbackPool pool) {
+        this.members = pool.members();
+
+        int total = 0;
+        for (FallbackPool.Member member : members) {
+            total += pool.virtualNodes() * member.weight();
+        }
+
+        long[][] entries = new long[total][];
+        int next = 0;
+        for (int i = 0; i < members.size(); i++) {
+            long base = hash(members.get(i).server().getBytes(StandardCharsets.UTF_8));
+            int count = pool.virtualNodes() * members.get(i).weight();
+            for (int replica = 0; replica < count; replica++) {
+                entries[next++] = new long[] {mix(base + replica * 0x9E3779B97F4A7C15L), i};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        this.points = new long[total];
+        this.owners = new int[total];
+        for (int i = 0; i < total; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    // Members in the order a player should try them: their own first, then clockwise around the ring
+    int[] preferenceOrder(UUID uuid) {
+        int[] order = new int[members.size()];
+        if (points.length == 0) {
+            return new int[0];
+        }
+
+        long key = mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+        int start = Arrays.binarySearch(points, key);
+        if (start < 0) {
+            start = -start - 1;
+        }
+
+        boolean[] seen = new boolean[members.size()];
+        int found = 0;
+        for (int step = 0; step < points.length && found < order.length; step++) {
+            int owner = owners[(start + step) % points.length];
+            if (!seen[owner]) {
+                seen[owner] = true;
+                order[found++] = owner;
+            }
+        }
+        return found == order.length ? order : Arrays.copyOf(order, found);
+    }
+
+    FallbackPool.Member member(int index) {
+        return members.get(index);
+    }
+
+    // FNV-1a, only used to place member names
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // Murmur3 finalizer, spreads nearby inputs across the whole ring
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.lastserver.database;
+
+import java.util.UUID;
+
+// A last-server save that could not reach MySQL, kept on disk until it can be replayed.
+// timestamp is when the player actually switched, so replay doesn't move last_seen forward.
+public record JournalEntry(UUID uuid, String username, String serverName, long timestamp) {
+}
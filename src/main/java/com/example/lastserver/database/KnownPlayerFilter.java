@@ -0,0 +1,200 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bloom filter of every player in the database, so a first-time join can skip the profile lookup entirely.
+// "Not in the filter" means the player has never been saved; "in the filter" still needs the real lookup.
+// It is rebuilt by streaming the table, and players saved by this proxy are added as they go. Players first
+// saved by another proxy are only picked up by the next rebuild, so "not in the filter" is only true when this
+// is the only proxy writing to the database; with known-players.single-proxy off the filter is never built.
+public class KnownPlayerFilter {
+    private static final String COUNT_PLAYERS = "SELECT COUNT(*) FROM last_server_v2";
+    private static final String COUNT_LEGACY_PLAYERS = "SELECT COUNT(*) FROM last_server";
+    private static final String SELECT_UUIDS = "SELECT uuid FROM last_server_v2";
+    private static final String SELECT_LEGACY_UUIDS = "SELECT uuid FROM last_server";
+
+    // Room for new players until the next rebuild
+    private static final double GROWTH_FACTOR = 1.5;
+    private static final long MIN_EXPECTED = 10_000;
+
+    private final LastServer plugin;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    // Bumped by reset() so a build that started against the old database is thrown away
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile BloomFilter current;
+    private volatile BloomFilter building;
+    // Players saved since the last build started; their rows may still be in the write-behind queue or journal
+    private volatile Set<UUID> addedSinceBuild = ConcurrentHashMap.newKeySet();
+    private volatile long loadedPlayers;
+    private volatile long lastBuilt;
+
+    public KnownPlayerFilter(LastServer plugin) {
+        this.plugin = plugin;
+    }
+
+    // True only if the player has definitely never been saved. False until the first build finishes.
+    public boolean isDefinitelyNew(UUID uuid) {
+        BloomFilter filter = current;
+        return filter != null && !filter.mightContain(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public void add(UUID uuid) {
+        addedSinceBuild.add(uuid);
+        
+        BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+
+        // A rebuild may already have streamed past where this player's row will be
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+    }
+
+    // Forgets everything after a reload switched to a different database and builds again from the new one
+    public void reset() {
+        generation.incrementAndGet();
+        current = null;
+        addedSinceBuild = ConcurrentHashMap.newKeySet();
+        rebuild();
+    }
+
+    // Builds a fresh filter in the background and swaps it in once the whole table has been read
+    public void rebuild() {
+        if (!plugin.getConfiguration().isKnownPlayersEnabled() || !plugin.getConfiguration().isKnownPlayersSingleProxy()) {
+            current = null;
+            return;
+        }
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+
+        int startedAt = generation.get();
+        Thread.ofVirtual().name("lastserver-known-players").start(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                long players = build(startedAt);
+                if (players >= 0) {
+                    plugin.getLogger().info("Loaded {} known players into the first join filter in {}ms",
+                        players, System.currentTimeMillis() - start);
+                }
+            } catch (SQLException | RuntimeException e) {
+                plugin.getLogger().error("Failed to build the known player filter, keeping the previous one", e);
+            } finally {
+                building = null;
+                rebuilding.set(false);
+            }
+            // A reset while this was running was skipped, so build again for the new database
+            if (generation.get() != startedAt) {
+                rebuild();
+            }
+        });
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public long getLoadedPlayers() {
+        return loadedPlayers;
+    }
+
+    public long getSizeBytes() {
+        BloomFilter filter = current;
+        return filter != null ? filter.getSizeBytes() : 0;
+    }
+
+    public long getLastBuilt() {
+        return lastBuilt;
+    }
+
+    // Returns the number of players loaded, or -1 if a reset made this build stale
+    private long build(int startedAt) throws SQLException {
+        MySQL mysql = plugin.getMySQL();
+        boolean legacy = mysql.getMigrator().isMigrating();
+
+        Set<UUID> carried = null;
+        
+        try (Connection conn = mysql.getConnection()) {
+            long expected = count(conn, COUNT_PLAYERS) + (legacy ? count(conn, COUNT_LEGACY_PLAYERS) : 0);
+            BloomFilter filter = BloomFilter.create(Math.max(MIN_EXPECTED, (long) (expected * GROWTH_FACTOR)),
+                plugin.getConfiguration().getKnownPlayersFalsePositiveRate());
+            // Publish the new filter before taking the set, so a save in between lands in one or the other
+            building = filter;
+            carried = addedSinceBuild;
+            addedSinceBuild = ConcurrentHashMap.newKeySet();
+
+            long players = stream(conn, SELECT_UUIDS, filter, false);
+            // Players not copied to v2 yet are still known players
+            if (legacy) {
+                players += stream(conn, SELECT_LEGACY_UUIDS, filter, true);
+            }
+
+            // Saves that hadn't reached the table yet
+            for (UUID uuid : carried) {
+                filter.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            }
+            
+            if (generation.get() != startedAt) {
+                // Saves made since the reset belong to the new database, so the next build needs them
+                addedSinceBuild.addAll(carried);
+                return -1;
+            }
+            current = filter;
+            loadedPlayers = players;
+            lastBuilt = System.currentTimeMillis();
+            return players;
+        } catch (SQLException | RuntimeException e) {
+            // Keep them for the next attempt
+            if (carried != null) {
+                addedSinceBuild.addAll(carried);
+            }
+            throw e;
+        }
+    }
+
+    private static long count(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Row by row streaming so a large table never sits in memory
+    private static long stream(Connection conn, String sql, BloomFilter filter, boolean legacy) throws SQLException {
+        long players = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = legacy ? parseLegacy(rs.getString(1)) : UuidCodec.fromBytes(rs.getBytes(1));
+                    if (uuid != null) {
+                        filter.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+                        players++;
+                    }
+                }
+            }
+        }
+        return players;
+    }
+
+    private static UUID parseLegacy(String value) {
+        try {
+            return value != null ? UUID.fromString(value) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.lastserver.database;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Holds profile lookups started during login so they resolve while the player is still authenticating
+public class LoginPrefetcher {
+    private static final long PREFETCH_TTL = TimeUnit.SECONDS.toMillis(30);
+    // Pre-login UUIDs aren't authenticated, so a flood of made-up ones must not grow the map or the query load
+    private static final int MAX_UNVERIFIED = 1024;
+
+    private final ConcurrentHashMap<UUID, Prefetch> prefetches = new ConcurrentHashMap<>();
+    private final Function<UUID, CompletableFuture<PlayerProfile>> loader;
+
+    public LoginPrefetcher(Function<UUID, CompletableFuture<PlayerProfile>> loader) {
+        this.loader = loader;
+    }
+
+    public void prefetch(UUID uuid) {
+        prefetches.compute(uuid, (key, existing) -> {
+            if (existing != null && !existing.isExpired()) {
+                return existing;
+            }
+            return new Prefetch(loader.apply(key), System.currentTimeMillis());
+        });
+    }
+
+    // Only an optimization, so when full the login just does its own lookup later
+    public void prefetchUnverified(UUID uuid) {
+        if (prefetches.size() >= MAX_UNVERIFIED && !prefetches.containsKey(uuid)) {
+            pruneExpired();
+            if (prefetches.size() >= MAX_UNVERIFIED) {
+                return;
+            }
+        }
+        prefetch(uuid);
+    }
+
+    // Hands over a prefetched lookup exactly once, or null if none is waiting
+    public CompletableFuture<PlayerProfile> take(UUID uuid) {
+        Prefetch prefetch = prefetches.remove(uuid);
+        if (prefetch == null || prefetch.isExpired()) {
+            return null;
+        }
+        return prefetch.result;
+    }
+
+    // Drops lookups for logins that never reached server selection (failed auth, cancelled login)
+    public void pruneExpired() {
+        prefetches.values().removeIf(Prefetch::isExpired);
+    }
+
+    public void clear() {
+        prefetches.clear();
+    }
+
+    public int size() {
+        return prefetches.size();
+    }
+
+    private static class Prefetch {
+        final CompletableFuture<PlayerProfile> result;
+        final long timestamp;
+
+        Prefetch(CompletableFuture<PlayerProfile> result, long timestamp) {
+            this.result = result;
+            this.timestamp = timestamp;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - timestamp > PREFETCH_TTL;
+        }
+    }
+}
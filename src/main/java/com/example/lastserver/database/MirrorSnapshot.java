@@ -0,0 +1,174 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// Binary copy of the player mirror so a restart doesn't have to scan the whole table.
+// Layout: magic, version, snapshot time, server name table, then 24 bytes per player
+// (msb, lsb, server index << 32 | last_seen seconds) up to a CRC32C of everything before it; the number of players
+// follows from the file size, so the file is written front to back in one pass.
+// Written to a temporary file, forced and moved into place, so a crash mid-write leaves the previous snapshot intact.
+class MirrorSnapshot {
+    private static final int MAGIC = 0x4C534D52; // "LSMR"
+    private static final int VERSION = 2;
+    private static final int ENTRY_SIZE = 24;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final LastServer plugin;
+    private final Path path;
+
+    MirrorSnapshot(LastServer plugin, Path path) {
+        this.plugin = plugin;
+        this.path = path;
+    }
+
+    // Loads the snapshot into the mirror and returns the time it was taken, or -1 if there is no usable snapshot
+    long read(PlayerMirror mirror) {
+        if (!Files.exists(path)) {
+            return -1;
+        }
+
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < 8 + 16 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                plugin.getLogger().warn("Ignoring player mirror snapshot with an unknown format");
+                return -1;
+            }
+
+            // Check the whole file before trusting any of it
+            int end = buffer.capacity() - 8;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, end));
+            if (crc.getValue() != buffer.getLong(end)) {
+                plugin.getLogger().warn("Ignoring corrupt player mirror snapshot");
+                return -1;
+            }
+
+            buffer.position(8);
+            long snapshotTime = buffer.getLong();
+            String[] servers = new String[buffer.getInt()];
+            for (int i = 0; i < servers.length; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                servers[i] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            if ((end - buffer.position()) % ENTRY_SIZE != 0) {
+                plugin.getLogger().warn("Ignoring corrupt player mirror snapshot");
+                return -1;
+            }
+            int count = (end - buffer.position()) / ENTRY_SIZE;
+            for (int i = 0; i < count; i++) {
+                long msb = buffer.getLong();
+                long lsb = buffer.getLong();
+                long value = buffer.getLong();
+                int server = (int) (value >>> 32);
+                if (server < servers.length) {
+                    mirror.put(msb, lsb, servers[server], (value & 0xFFFFFFFFL) * 1000);
+                }
+            }
+
+            plugin.getLogger().info("Loaded {} players from the mirror snapshot in {}ms", count, System.currentTimeMillis() - start);
+            return snapshotTime;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            plugin.getLogger().warn("Failed to read the player mirror snapshot, loading from MySQL instead", e);
+            return -1;
+        }
+    }
+
+    synchronized void write(PlayerMirror mirror) {
+        // Anything saved after this point is newer than the snapshot and gets picked up by the catch-up query
+        long snapshotTime = System.currentTimeMillis();
+        long start = snapshotTime;
+
+        // The server table goes first, so collect the names before writing any entries
+        Map<String, Integer> serverIndex = new HashMap<>();
+        List<byte[]> serverNames = new ArrayList<>();
+        mirror.forEach((msb, lsb, serverName, lastSeen) -> serverIndex.computeIfAbsent(serverName, name -> {
+            serverNames.add(name.getBytes(StandardCharsets.UTF_8));
+            return serverNames.size() - 1;
+        }));
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        CRC32C crc = new CRC32C();
+        long[] written = new long[1];
+        try {
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(snapshotTime);
+                buffer.putInt(serverNames.size());
+                for (byte[] name : serverNames) {
+                    if (buffer.remaining() < 2 + name.length) {
+                        drain(channel, buffer, crc);
+                    }
+                    buffer.putShort((short) name.length);
+                    buffer.put(name);
+                }
+
+                // Entries for servers added since the first pass wait for the next snapshot or the catch-up
+                mirror.forEach((msb, lsb, serverName, lastSeen) -> {
+                    Integer server = serverIndex.get(serverName);
+                    if (server == null) {
+                        return;
+                    }
+                    if (buffer.remaining() < ENTRY_SIZE) {
+                        try {
+                            drain(channel, buffer, crc);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    buffer.putLong(msb);
+                    buffer.putLong(lsb);
+                    buffer.putLong(((long) server << 32) | lastSeen);
+                    written[0]++;
+                });
+                drain(channel, buffer, crc);
+
+                buffer.putLong(crc.getValue());
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (plugin.getConfiguration().isDebug()) {
+                plugin.getLogger().info("Wrote player mirror snapshot with {} players in {}ms", written[0], System.currentTimeMillis() - start);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            plugin.getLogger().error("Failed to write the player mirror snapshot", e);
+        }
+    }
+
+    // Writes out what is buffered, adding it to the checksum on the way
+    private static void drain(FileChannel channel, ByteBuffer buffer, CRC32C crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
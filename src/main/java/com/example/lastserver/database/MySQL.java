@@ -1,183 +1,426 @@
 package com.example.lastserver.database;
 
 import com.example.lastserver.LastServer;
+import com.example.lastserver.config.Configuration;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 public class MySQL {
     private final LastServer plugin;
-    private HikariDataSource dataSource;
+    private final DatabaseExecutor executor;
+    private final SchemaMigrator migrator;
+    private final CircuitBreaker breaker;
+    // The pool and the server ids of the database it points at, swapped together on a reconnect
+    private volatile Database database;
+    
+    private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    
+    private static final String CREATE_SERVER_NAMES = """
+        CREATE TABLE IF NOT EXISTS server_names (
+            id SMALLINT UNSIGNED AUTO_INCREMENT PRIMARY KEY,
+            name VARCHAR(50) NOT NULL,
+            UNIQUE KEY idx_name (name)
+        )
+        """;
     
     private static final String CREATE_TABLE = """
-        CREATE TABLE IF NOT EXISTS last_server (
-            uuid VARCHAR(36) PRIMARY KEY,
+        CREATE TABLE IF NOT EXISTS last_server_v2 (
+            uuid BINARY(16) PRIMARY KEY,
             username VARCHAR(16) NOT NULL,
-            server_name VARCHAR(50) NOT NULL,
+            server_id SMALLINT UNSIGNED NOT NULL,
             last_seen TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
             first_joined TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
             INDEX idx_last_seen (last_seen)
         )
         """;
     
-    private static final String SELECT_LAST_SERVER = """
-        SELECT server_name, last_seen FROM last_server WHERE uuid = ? AND last_seen > DATE_SUB(NOW(), INTERVAL ? DAY)
+    private static final String CREATE_META = """
+        CREATE TABLE IF NOT EXISTS lastserver_meta (
+            meta_key VARCHAR(32) PRIMARY KEY,
+            meta_value VARCHAR(64) NOT NULL
+        )
+        """;
+    
+    private static final String SELECT_PROFILE = """
+        SELECT server_id, last_seen, first_joined FROM last_server_v2 WHERE uuid = ?
+        """;
+    
+    private static final String SELECT_LEGACY_PROFILE = """
+        SELECT server_name, last_seen, first_joined FROM last_server WHERE uuid = ?
         """;
     
+    // last_seen comes from the proxy clock like journal replays, so replay compares timestamps from the same clock
     private static final String INSERT_OR_UPDATE = """
-        INSERT INTO last_server (uuid, username, server_name) VALUES (?, ?, ?)
-        ON DUPLICATE KEY UPDATE username = VALUES(username), server_name = VALUES(server_name), last_seen = CURRENT_TIMESTAMP
+        INSERT INTO last_server_v2 (uuid, username, server_id, last_seen) VALUES (?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE username = VALUES(username), server_id = VALUES(server_id), last_seen = VALUES(last_seen)
         """;
     
-    private static final String DELETE_OLD_ENTRIES = """
-        DELETE FROM last_server WHERE last_seen < DATE_SUB(NOW(), INTERVAL 30 DAY)
+    // Journaled saves carry their own last_seen and must never overwrite a newer save.
+    // MySQL applies these assignments left to right, so last_seen has to be updated last.
+    private static final String REPLAY_UPSERT = """
+        INSERT INTO last_server_v2 (uuid, username, server_id, last_seen) VALUES (?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+            username = IF(VALUES(last_seen) >= last_seen, VALUES(username), username),
+            server_id = IF(VALUES(last_seen) >= last_seen, VALUES(server_id), server_id),
+            last_seen = GREATEST(last_seen, VALUES(last_seen))
         """;
-
-    private static final String CHECK_FIRST_TIME = """
-        SELECT COUNT(*) as count FROM last_server WHERE uuid = ?
+    
+    // uuid breaks ties so the chunk is deterministic (safe for statement-based replication); InnoDB keeps the
+    // primary key in idx_last_seen, so this order still walks the index
+    private static final String DELETE_EXPIRED_CHUNK = """
+        DELETE FROM last_server_v2 WHERE last_seen < ? ORDER BY last_seen, uuid LIMIT ?
+        """;
+    
+    private static final String SELECT_BY_USERNAME = """
+        SELECT server_id, last_seen FROM last_server_v2 WHERE username = ? ORDER BY last_seen DESC LIMIT 1
+        """;
+    
+    private static final String SELECT_LEGACY_BY_USERNAME = """
+        SELECT server_name FROM last_server WHERE username = ? ORDER BY last_seen DESC LIMIT 1
         """;
 
     public MySQL(LastServer plugin) {
         this.plugin = plugin;
+        this.executor = new DatabaseExecutor(plugin.getConfiguration().getPoolSize());
+        this.migrator = new SchemaMigrator(plugin, this);
+        this.breaker = new CircuitBreaker(plugin, plugin.getConfiguration().getCircuitBreakerWindowSize());
     }
 
     public boolean connect() {
         try {
-            HikariConfig config = new HikariConfig();
-            config.setDriverClassName("com.mysql.cj.jdbc.Driver");
-            config.setJdbcUrl("jdbc:mysql://" + plugin.getConfiguration().getMysqlHost() + ":" + 
-                plugin.getConfiguration().getMysqlPort() + "/" + plugin.getConfiguration().getMysqlDatabase() + 
-                "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC");
-            config.setUsername(plugin.getConfiguration().getMysqlUsername());
-            config.setPassword(plugin.getConfiguration().getMysqlPassword());
-            config.setMaximumPoolSize(plugin.getConfiguration().getPoolSize());
-            config.setMinimumIdle(2);
-            config.setMaxLifetime(TimeUnit.MINUTES.toMillis(30));
-            config.setConnectionTimeout(TimeUnit.SECONDS.toMillis(10));
-            config.setIdleTimeout(TimeUnit.MINUTES.toMillis(10));
-            config.setLeakDetectionThreshold(TimeUnit.MINUTES.toMillis(2));
-            config.addDataSourceProperty("cachePrepStmts", "true");
-            config.addDataSourceProperty("prepStmtCacheSize", "250");
-            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-            config.addDataSourceProperty("useServerPrepStmts", "true");
-            config.addDataSourceProperty("useLocalSessionState", "true");
-            config.addDataSourceProperty("rewriteBatchedStatements", "true");
-            config.addDataSourceProperty("cacheResultSetMetadata", "true");
-            config.addDataSourceProperty("cacheServerConfiguration", "true");
-            config.addDataSourceProperty("elideSetAutoCommits", "true");
-            config.addDataSourceProperty("maintainTimeStats", "false");
+            HikariDataSource pool = createDataSource(plugin.getConfiguration());
+            ServerDictionary dictionary = new ServerDictionary();
+            this.database = new Database(pool, dictionary);
+            executor.resize(plugin.getConfiguration().getPoolSize());
             
-            this.dataSource = new HikariDataSource(config);
-            
-            // Create table if it doesn't exist
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(CREATE_TABLE)) {
-                stmt.executeUpdate();
-            }
-
-            //Migration for 2.0 discord chat integration
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(
-                     "ALTER TABLE last_server ADD COLUMN IF NOT EXISTS first_joined TIMESTAMP DEFAULT CURRENT_TIMESTAMP")) {
-                stmt.executeUpdate();
-            } catch (SQLException e) {
-                // Column might already exist, that's fine
-                if (plugin.getConfiguration().isDebug()) {
-                    plugin.getLogger().info("first_joined column already exists or could not be added");
-                }
+            try (Connection conn = pool.getConnection()) {
+                initialize(conn);
+                dictionary.load(conn);
             }
+            migrator.start();
             
             plugin.getLogger().info("Successfully connected to MySQL database");
             return true;
-        } catch (SQLException e) {
+        } catch (SQLException | RuntimeException e) {
             plugin.getLogger().error("Failed to connect to MySQL database", e);
             return false;
         }
     }
 
+    // Moves from the previous configuration's mysql settings to the target's. Only a change to the connection settings
+    // rebuilds the pool; everything else is picked up in place so in-flight queries and logins are not disturbed.
+    // The plugin keeps publishing the previous mysql section meanwhile, so nothing reads settings for a pool not in use.
+    public boolean applyConfiguration(Configuration previous, Configuration target) {
+        if (target.getCircuitBreakerWindowSize() != previous.getCircuitBreakerWindowSize()) {
+            breaker.resize(target.getCircuitBreakerWindowSize());
+        }
+        
+        if (!target.hasSameConnectionSettings(previous)) {
+            return reconnect(target, !target.hasSameDatabase(previous));
+        }
+        
+        if (target.getPoolSize() != previous.getPoolSize() && isConnected()) {
+            database.pool().getHikariConfigMXBean().setMaximumPoolSize(target.getPoolSize());
+            executor.resize(target.getPoolSize());
+            plugin.getLogger().info("Resized MySQL pool to {} connections", target.getPoolSize());
+        }
+        return true;
+    }
+
+    // Builds and warms up a pool for the new settings, then swaps it in and lets the old pool drain.
+    // If the new pool can't connect the old one keeps serving.
+    private boolean reconnect(Configuration settings, boolean databaseChanged) {
+        HikariDataSource fresh = null;
+        // Server ids are per database, so a different one gets its own dictionary, loaded before any query can use it
+        Database previous = database;
+        boolean newIds = previous == null || databaseChanged;
+        ServerDictionary dictionary = newIds ? new ServerDictionary() : previous.dictionary();
+        try {
+            fresh = createDataSource(settings);
+            try (Connection conn = fresh.getConnection()) {
+                initialize(conn);
+                if (newIds) {
+                    dictionary.load(conn);
+                }
+            }
+            warmUp(fresh, settings.getPoolSize());
+        } catch (SQLException | RuntimeException e) {
+            plugin.getLogger().error("Failed to connect with the new MySQL settings, keeping the current connection", e);
+            if (fresh != null) {
+                fresh.close();
+            }
+            return false;
+        }
+        
+        database = new Database(fresh, dictionary);
+        executor.resize(settings.getPoolSize());
+        migrator.start();
+        plugin.getLogger().info("Switched to a new MySQL connection pool");
+        
+        if (previous != null) {
+            Thread.ofVirtual().name("lastserver-pool-drain").start(() -> drain(previous.pool()));
+        }
+        return true;
+    }
+
+    // Waits for the minimum idle connections so the first requests on the new pool don't pay for the handshakes
+    private void warmUp(HikariDataSource pool, int poolSize) {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        int target = Math.min(2, poolSize);
+        
+        try {
+            while (bean != null && bean.getIdleConnections() < target && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Closes a retired pool once the queries that were still using it have returned their connections
+    private void drain(HikariDataSource pool) {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        
+        try {
+            while (bean != null && bean.getActiveConnections() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        pool.close();
+        plugin.getLogger().info("Closed the previous MySQL connection pool");
+    }
+
+    private HikariDataSource createDataSource(Configuration settings) {
+        HikariConfig config = new HikariConfig();
+        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        config.setJdbcUrl("jdbc:mysql://" + settings.getMysqlHost() + ":" + 
+            settings.getMysqlPort() + "/" + settings.getMysqlDatabase() + 
+            "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC");
+        config.setUsername(settings.getMysqlUsername());
+        config.setPassword(settings.getMysqlPassword());
+        config.setMaximumPoolSize(settings.getPoolSize());
+        config.setMinimumIdle(2);
+        config.setMaxLifetime(TimeUnit.MINUTES.toMillis(30));
+        config.setConnectionTimeout(TimeUnit.SECONDS.toMillis(10));
+        config.setIdleTimeout(TimeUnit.MINUTES.toMillis(10));
+        config.setLeakDetectionThreshold(TimeUnit.MINUTES.toMillis(2));
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("useLocalSessionState", "true");
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
+        config.addDataSourceProperty("cacheResultSetMetadata", "true");
+        config.addDataSourceProperty("cacheServerConfiguration", "true");
+        config.addDataSourceProperty("elideSetAutoCommits", "true");
+        config.addDataSourceProperty("maintainTimeStats", "false");
+        
+        return new HikariDataSource(config);
+    }
+
+    // Create tables if they don't exist, then pick up any old VARCHAR(36) table for migration.
+    // The server dictionary is loaded separately, a reconnect must not mix ids from two databases.
+    private void initialize(Connection conn) throws SQLException {
+        for (String ddl : new String[] {CREATE_SERVER_NAMES, CREATE_TABLE, CREATE_META}) {
+            try (PreparedStatement stmt = conn.prepareStatement(ddl)) {
+                stmt.executeUpdate();
+            }
+        }
+        
+        migrator.prepare(conn);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        close();
+    }
+
     public void close() {
-        if (dataSource != null && !dataSource.isClosed()) {
-            dataSource.close();
+        Database current = database;
+        if (current != null && !current.pool().isClosed()) {
+            current.pool().close();
             plugin.getLogger().info("MySQL connection closed");
         }
     }
 
-    public CompletableFuture<String> getLastServer(String uuid) {
-        if (uuid == null || uuid.trim().isEmpty()) {
+    // Pure primary key read for everything a login needs: last server, timestamps and whether the row exists
+    public CompletableFuture<PlayerProfile> getPlayerProfile(UUID uuid) {
+        if (uuid == null) {
             return CompletableFuture.completedFuture(null);
         }
         
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(SELECT_LAST_SERVER)) {
-                
-                stmt.setString(1, uuid.trim());
-                stmt.setInt(2, plugin.getConfiguration().getInactiveDays());
+        return submit((conn, dictionary) -> {
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_PROFILE)) {
+                stmt.setBytes(1, UuidCodec.toBytes(uuid));
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        String serverName = rs.getString("server_name");
-                        return isValidServerName(serverName) ? serverName : null;
+                        String serverName = dictionary.resolveName(conn, rs.getInt("server_id"));
+                        return toProfile(serverName, rs.getTimestamp("last_seen"), rs.getTimestamp("first_joined"));
                     }
                 }
-            } catch (SQLException e) {
-                plugin.getLogger().error("Failed to get last server for UUID: " + uuid, e);
             }
-            return null;
-        });
+            
+            // Not copied over yet, the old table still has the answer
+            if (migrator.isMigrating()) {
+                try (PreparedStatement stmt = conn.prepareStatement(SELECT_LEGACY_PROFILE)) {
+                    stmt.setString(1, uuid.toString());
+                    
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            return toProfile(rs.getString("server_name"), rs.getTimestamp("last_seen"), rs.getTimestamp("first_joined"));
+                        }
+                    }
+                } catch (SQLException e) {
+                    // Renamed away by another proxy finishing the migration, so every row is in v2 already
+                    if (!SchemaMigrator.isMissingTable(e)) {
+                        throw e;
+                    }
+                    migrator.legacyTableGone();
+                }
+            }
+            return PlayerProfile.NOT_FOUND;
+        }, null, "Failed to get player profile for UUID: " + uuid);
     }
 
-    public CompletableFuture<Void> saveLastServer(String uuid, String username, String serverName) {
-        if (uuid == null || uuid.trim().isEmpty() || 
+    private PlayerProfile toProfile(String serverName, Timestamp lastSeen, Timestamp firstJoined) {
+        return new PlayerProfile(
+            true,
+            isValidServerName(serverName) ? serverName : null,
+            lastSeen != null ? lastSeen.getTime() : 0L,
+            firstJoined != null ? firstJoined.getTime() : 0L
+        );
+    }
+
+    // Completes with false if the save didn't reach the database, so the caller can journal it
+    public CompletableFuture<Boolean> saveLastServer(UUID uuid, String username, String serverName, long timestamp) {
+        if (uuid == null || 
             username == null || username.trim().isEmpty() || 
             serverName == null || serverName.trim().isEmpty()) {
-            return CompletableFuture.completedFuture(null);
+            return CompletableFuture.completedFuture(true);
         }
         
         if (!isValidServerName(serverName) || !isValidUsername(username)) {
-            return CompletableFuture.completedFuture(null);
+            return CompletableFuture.completedFuture(true);
         }
         
-        return CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(INSERT_OR_UPDATE)) {
-                
-                stmt.setString(1, uuid.trim());
+        return submit((conn, dictionary) -> {
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_OR_UPDATE)) {
+                stmt.setBytes(1, UuidCodec.toBytes(uuid));
                 stmt.setString(2, username.trim());
-                stmt.setString(3, serverName.trim());
+                stmt.setInt(3, dictionary.resolveId(conn, serverName.trim()));
+                stmt.setTimestamp(4, new Timestamp(timestamp));
                 
                 stmt.executeUpdate();
+            }
+            
+            if (plugin.getConfiguration().isDebug()) {
+                plugin.getLogger().info("Saved last server for {}: {}", username, serverName);
+            }
+            return true;
+        }, false, "Failed to save last server for UUID: " + uuid);
+    }
+
+    // Flushes a batch of coalesced writes from the write-behind queue in one round trip.
+    // Returns the number of rows sent, or -1 if the batch failed or the circuit breaker is open.
+    public int saveLastServers(Collection<PendingWrite> writes) {
+        if (writes.isEmpty()) {
+            return 0;
+        }
+        
+        long permit = isConnected() ? breaker.acquire() : CircuitBreaker.REJECTED;
+        if (permit == CircuitBreaker.REJECTED) {
+            return -1;
+        }
+        
+        return execute(permit, (conn, dictionary) -> {
+            int queued = 0;
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_OR_UPDATE)) {
+                for (PendingWrite write : writes) {
+                    if (!isValidServerName(write.serverName()) || !isValidUsername(write.username())) {
+                        continue;
+                    }
+                    stmt.setBytes(1, UuidCodec.toBytes(write.uuid()));
+                    stmt.setString(2, write.username().trim());
+                    stmt.setInt(3, dictionary.resolveId(conn, write.serverName().trim()));
+                    stmt.setTimestamp(4, new Timestamp(write.timestamp()));
+                    stmt.addBatch();
+                    queued++;
+                }
                 
-                if (plugin.getConfiguration().isDebug()) {
-                    plugin.getLogger().info("Saved last server for {}: {}", username, serverName);
+                if (queued > 0) {
+                    stmt.executeBatch();
                 }
-            } catch (SQLException e) {
-                plugin.getLogger().error("Failed to save last server for UUID: " + uuid, e);
             }
-        });
+            
+            if (plugin.getConfiguration().isDebug()) {
+                plugin.getLogger().info("Flushed {} last server writes to database", queued);
+            }
+            return queued;
+        }, -1, "Failed to flush " + writes.size() + " last server writes");
     }
 
-    public CompletableFuture<Integer> cleanupOldEntries() {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(DELETE_OLD_ENTRIES)) {
+    // Replays journaled saves with their original timestamps. Returns the number of rows sent, or -1 on failure.
+    public int replayLastServers(Collection<JournalEntry> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        
+        long permit = isConnected() ? breaker.acquire() : CircuitBreaker.REJECTED;
+        if (permit == CircuitBreaker.REJECTED) {
+            return -1;
+        }
+        
+        return execute(permit, (conn, dictionary) -> {
+            int queued = 0;
+            try (PreparedStatement stmt = conn.prepareStatement(REPLAY_UPSERT)) {
+                for (JournalEntry entry : entries) {
+                    if (!isValidServerName(entry.serverName()) || !isValidUsername(entry.username())) {
+                        continue;
+                    }
+                    stmt.setBytes(1, UuidCodec.toBytes(entry.uuid()));
+                    stmt.setString(2, entry.username().trim());
+                    stmt.setInt(3, dictionary.resolveId(conn, entry.serverName().trim()));
+                    stmt.setTimestamp(4, new Timestamp(entry.timestamp()));
+                    stmt.addBatch();
+                    queued++;
+                }
                 
-                int deleted = stmt.executeUpdate();
-                if (deleted > 0) {
-                    plugin.getLogger().info("Cleaned up {} old entries from database", deleted);
+                if (queued > 0) {
+                    stmt.executeBatch();
                 }
-                return deleted;
-            } catch (SQLException e) {
-                plugin.getLogger().error("Failed to cleanup old entries", e);
-                return 0;
             }
-        });
+            return queued;
+        }, -1, "Failed to replay " + entries.size() + " journaled saves");
+    }
+
+    // Deletes at most one chunk of rows older than the cutoff, walking idx_last_seen so each statement stays short.
+    // Returns the number of rows deleted, or -1 if the chunk failed.
+    public CompletableFuture<Integer> deleteExpiredChunk(Timestamp cutoff, int limit) {
+        return submit((conn, dictionary) -> {
+            try (PreparedStatement stmt = conn.prepareStatement(DELETE_EXPIRED_CHUNK)) {
+                stmt.setTimestamp(1, cutoff);
+                stmt.setInt(2, limit);
+                return stmt.executeUpdate();
+            }
+        }, -1, "Failed to cleanup old entries");
     }
 
     public CompletableFuture<String> getPlayerLastServer(String playerName) {
@@ -185,55 +428,104 @@ public class MySQL {
             return CompletableFuture.completedFuture(null);
         }
         
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT server_name, last_seen FROM last_server WHERE username = ? ORDER BY last_seen DESC LIMIT 1")) {
-                
+        return submit((conn, dictionary) -> {
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_BY_USERNAME)) {
                 stmt.setString(1, playerName.trim());
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        String serverName = rs.getString("server_name");
+                        String serverName = dictionary.resolveName(conn, rs.getInt("server_id"));
                         return isValidServerName(serverName) ? serverName : null;
                     }
                 }
-            } catch (SQLException e) {
-                plugin.getLogger().error("Failed to get last server for player: " + playerName, e);
+            }
+            
+            // Not copied over yet, the old table still has the answer
+            if (migrator.isMigrating()) {
+                try (PreparedStatement stmt = conn.prepareStatement(SELECT_LEGACY_BY_USERNAME)) {
+                    stmt.setString(1, playerName.trim());
+                    
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            String serverName = rs.getString("server_name");
+                            return isValidServerName(serverName) ? serverName : null;
+                        }
+                    }
+                } catch (SQLException e) {
+                    // Renamed away by another proxy finishing the migration, so every row is in v2 already
+                    if (!SchemaMigrator.isMissingTable(e)) {
+                        throw e;
+                    }
+                    migrator.legacyTableGone();
+                }
             }
             return null;
-        });
+        }, null, "Failed to get last server for player: " + playerName);
     }
 
-    //discord 2.0 new method for checking first time player
-    public CompletableFuture<Boolean> isFirstTimePlayer(String uuid) {
-        if (uuid == null || uuid.trim().isEmpty()) {
-            return CompletableFuture.completedFuture(false);
+    // Fails fast with the fallback while the circuit breaker is open, otherwise runs the call on the DB executor
+    private <T> CompletableFuture<T> submit(SqlCall<T> call, T fallback, String errorMessage) {
+        long permit = breaker.acquire();
+        if (permit == CircuitBreaker.REJECTED) {
+            return CompletableFuture.completedFuture(fallback);
         }
-        
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(CHECK_FIRST_TIME)) {
-                
-                stmt.setString(1, uuid.trim());
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getInt("count") == 0;
-                    }
-                }
-            } catch (SQLException e) {
-                plugin.getLogger().error("Failed to check first time status for UUID: " + uuid, e);
+        try {
+            return CompletableFuture.supplyAsync(() -> execute(permit, call, fallback, errorMessage), executor);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the call never ran, so hand back the permit without counting it either way
+            breaker.release(permit);
+            return CompletableFuture.completedFuture(fallback);
+        }
+    }
+
+    // Runs one call on a pooled connection and reports how it went to the circuit breaker
+    private <T> T execute(long permit, SqlCall<T> call, T fallback, String errorMessage) {
+        long start = System.nanoTime();
+        boolean success = false;
+        Database current = database;
+        try (Connection conn = current.pool().getConnection()) {
+            T result = call.call(conn, current.dictionary());
+            success = true;
+            return result;
+        } catch (SQLException e) {
+            plugin.getLogger().error(errorMessage, e);
+            return fallback;
+        } finally {
+            if (success) {
+                breaker.recordSuccess(permit, System.nanoTime() - start);
+            } else {
+                breaker.recordFailure(permit);
             }
-            return false;
-        });
+        }
+    }
+
+    Connection getConnection() throws SQLException {
+        return database.pool().getConnection();
+    }
+
+    // For work that needs server ids as well; take both from the same snapshot so they match across a reconnect
+    Database getDatabase() {
+        return database;
+    }
+
+    public SchemaMigrator getMigrator() {
+        return migrator;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    public DatabaseExecutor getExecutor() {
+        return executor;
     }
 
     public boolean isConnected() {
-        return dataSource != null && !dataSource.isClosed();
+        Database current = database;
+        return current != null && !current.pool().isClosed();
     }
     
-    private boolean isValidServerName(String serverName) {
+    static boolean isValidServerName(String serverName) {
         if (serverName == null || serverName.trim().isEmpty()) {
             return false;
         }
@@ -246,7 +538,7 @@ public class MySQL {
         return trimmed.matches("^[a-zA-Z0-9_-]+$");
     }
     
-    private boolean isValidUsername(String username) {
+    static boolean isValidUsername(String username) {
         if (username == null || username.trim().isEmpty()) {
             return false;
         }
@@ -258,4 +550,12 @@ public class MySQL {
         
         return trimmed.matches("^[a-zA-Z0-9_]+$");
     }
-}
\ No newline at end of file
+
+    record Database(HikariDataSource pool, ServerDictionary dictionary) {
+    }
+
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call(Connection conn, ServerDictionary dictionary) throws SQLException;
+    }
+}
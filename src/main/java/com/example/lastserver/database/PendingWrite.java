@@ -0,0 +1,17 @@
+package com.example.lastserver.database;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// A coalesced last-server update waiting in the write-behind queue.
+// Every caller that saved the same UUID before the flush shares the completion future.
+public record PendingWrite(UUID uuid, String username, String serverName, long timestamp, CompletableFuture<Void> completion) {
+
+    PendingWrite replace(String username, String serverName, long timestamp) {
+        return new PendingWrite(uuid, username, serverName, timestamp, completion);
+    }
+
+    JournalEntry toJournalEntry() {
+        return new JournalEntry(uuid, username, serverName, timestamp);
+    }
+}
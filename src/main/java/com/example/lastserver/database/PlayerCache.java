@@ -0,0 +1,112 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded UUID -> player profile cache with TTL, evicting the least recently used entry when full
+public class PlayerCache {
+    private final LastServer plugin;
+    private final LinkedHashMap<UUID, CachedProfile> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PlayerCache(LastServer plugin) {
+        this.plugin = plugin;
+    }
+
+    public PlayerProfile get(UUID uuid) {
+        synchronized (entries) {
+            CachedProfile cached = entries.get(uuid);
+            if (cached != null) {
+                if (System.currentTimeMillis() - cached.timestamp < plugin.getConfiguration().getPlayerCacheTtl()) {
+                    hits.incrementAndGet();
+                    return cached.profile;
+                }
+                entries.remove(uuid);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(UUID uuid, PlayerProfile profile) {
+        int maxSize = plugin.getConfiguration().getPlayerCacheMaxSize();
+        if (maxSize <= 0) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(uuid, new CachedProfile(profile, System.currentTimeMillis()));
+
+            // Access order puts the least recently used entries first
+            Iterator<Map.Entry<UUID, CachedProfile>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    // Updates the cached row in place after a save so reconnects see the new server
+    public void update(UUID uuid, String serverName) {
+        int maxSize = plugin.getConfiguration().getPlayerCacheMaxSize();
+        if (maxSize <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CachedProfile cached = entries.get(uuid);
+            PlayerProfile current = cached != null ? cached.profile : new PlayerProfile(true, null, now, now);
+            put(uuid, current.withServer(serverName, now));
+        }
+    }
+
+    public void remove(UUID uuid) {
+        synchronized (entries) {
+            entries.remove(uuid);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static class CachedProfile {
+        final PlayerProfile profile;
+        final long timestamp;
+
+        CachedProfile(PlayerProfile profile, long timestamp) {
+            this.profile = profile;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// In-memory copy of last_server_v2 for the login path. Entries live in an open-addressing table of primitive
+// arrays keyed by the UUID's two longs, with the server as a small local id and last_seen in epoch seconds,
+// about 32 bytes per player. Reads take no locks; writes are serialized and publish the key last, so a reader
+// either finds a complete entry or none. MySQL stays the durable store behind the write-behind queue.
+// Assumes this is the only proxy writing to the database: saves made through other proxies are not seen until
+// the next start, so a mirrored player can have a stale last server. Rows removed by retention are dropped from
+// the mirror by age, wherever the delete ran.
+public class PlayerMirror {
+    private static final String SELECT_ALL = "SELECT uuid, server_id, last_seen FROM last_server_v2";
+    private static final String SELECT_SINCE = "SELECT uuid, server_id, last_seen FROM last_server_v2 WHERE last_seen >= ?";
+    private static final String SELECT_LEGACY = "SELECT uuid, server_name, last_seen FROM last_server";
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int INITIAL_CAPACITY = 1 << 14;
+    // Value of a removed entry; the key stays in its slot so probing past it still works, until the next resize
+    private static final long REMOVED = -1L;
+    // Allows for clock skew between the proxy and MySQL when catching up from a snapshot
+    private static final long CATCH_UP_MARGIN = TimeUnit.MINUTES.toMillis(5);
+
+    private final LastServer plugin;
+    private final MirrorSnapshot snapshot;
+    private final ConcurrentHashMap<String, Integer> serverIds = new ConcurrentHashMap<>();
+    // Copy-on-write so reads never lock; there are only ever a handful of servers
+    private volatile String[] serverNames = new String[0];
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile boolean loaded;
+
+    public PlayerMirror(LastServer plugin) {
+        this.plugin = plugin;
+        this.snapshot = new MirrorSnapshot(plugin, plugin.getDataDirectory().resolve("mirror.snapshot"));
+    }
+
+    // Starts from the snapshot file if there is a valid one and only reads rows changed since it was written,
+    // otherwise streams the whole table. Runs in the background; lookups go to MySQL until it is done.
+    public void load() {
+        load(true);
+    }
+
+    // Starts over from the database after a reload switched to a different one; the snapshot is of the old one
+    public void reload() {
+        loaded = false;
+        synchronized (this) {
+            table = new Table(INITIAL_CAPACITY);
+        }
+        load(false);
+    }
+
+    private void load(boolean useSnapshot) {
+        Thread.ofVirtual().name("lastserver-mirror").start(() -> {
+            long snapshotTime = useSnapshot ? snapshot.read(this) : -1;
+            long start = System.currentTimeMillis();
+            MySQL.Database database = plugin.getMySQL().getDatabase();
+            try (Connection conn = database.pool().getConnection()) {
+                // The full load streams on this connection, which can't run other queries until it is done
+                ServerDictionary dictionary = database.dictionary();
+                dictionary.load(conn);
+                long players;
+                if (snapshotTime > 0) {
+                    players = catchUp(conn, dictionary, snapshotTime - CATCH_UP_MARGIN);
+                    plugin.getLogger().info("Caught up the player mirror with {} players changed since the snapshot in {}ms",
+                        players, System.currentTimeMillis() - start);
+                } else {
+                    players = stream(conn, dictionary, false);
+                    if (plugin.getMySQL().getMigrator().isMigrating()) {
+                        players += stream(conn, dictionary, true);
+                    }
+                    plugin.getLogger().info("Mirrored {} players into memory in {}ms", players, System.currentTimeMillis() - start);
+                }
+                // The snapshot may hold players that retention deleted since it was written
+                removeOlderThan(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(plugin.getConfiguration().getRetentionDays()));
+                loaded = true;
+            } catch (SQLException | RuntimeException e) {
+                plugin.getLogger().error("Failed to load the player mirror, logins will keep using MySQL", e);
+            }
+        });
+    }
+
+    // Writes the current contents to the snapshot file; skipped until the mirror is complete
+    public void saveSnapshot() {
+        if (loaded) {
+            snapshot.write(this);
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Lock-free read; null if the player isn't mirrored
+    public PlayerProfile get(UUID uuid) {
+        Table current = table;
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int mask = current.capacity - 1;
+
+        for (int slot = current.slotOf(msb, lsb); ; slot = (slot + 1) & mask) {
+            long storedMsb = (long) LONGS.getAcquire(current.msbs, slot);
+            long storedLsb = current.lsbs[slot];
+            if (storedMsb == 0 && storedLsb == 0) {
+                return null;
+            }
+            if (storedMsb == msb && storedLsb == lsb) {
+                long value = (long) LONGS.getAcquire(current.values, slot);
+                if (value == REMOVED) {
+                    return null;
+                }
+                String serverName = serverName((int) (value >>> 32));
+                long lastSeen = TimeUnit.SECONDS.toMillis(value & 0xFFFFFFFFL);
+                return new PlayerProfile(true, serverName, lastSeen, 0L);
+            }
+        }
+    }
+
+    public void put(UUID uuid, String serverName, long lastSeenMillis) {
+        put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), serverName, lastSeenMillis);
+    }
+
+    // Visits every entry of the current table. Entries added while this runs may or may not be seen.
+    void forEach(EntryVisitor visitor) {
+        Table current = table;
+        for (int slot = 0; slot < current.capacity; slot++) {
+            long msb = (long) LONGS.getAcquire(current.msbs, slot);
+            long lsb = current.lsbs[slot];
+            if (msb == 0 && lsb == 0) {
+                continue;
+            }
+            long value = (long) LONGS.getAcquire(current.values, slot);
+            if (value == REMOVED) {
+                continue;
+            }
+            String serverName = serverName((int) (value >>> 32));
+            if (serverName != null) {
+                visitor.visit(msb, lsb, serverName, value & 0xFFFFFFFFL);
+            }
+        }
+    }
+
+    // Used by the snapshot loader, which already has the raw longs
+    void put(long msb, long lsb, String serverName, long lastSeenMillis) {
+        if ((msb == 0 && lsb == 0) || serverName == null) {
+            return;
+        }
+        insert(msb, lsb, internServer(serverName), lastSeenMillis);
+    }
+
+    // Drops everyone last seen before the cutoff, matching the rows retention deletes from MySQL
+    public synchronized int removeOlderThan(long cutoffMillis) {
+        Table current = table;
+        long cutoff = TimeUnit.MILLISECONDS.toSeconds(cutoffMillis);
+        int removed = 0;
+        for (int slot = 0; slot < current.capacity; slot++) {
+            long value = current.values[slot];
+            if ((current.msbs[slot] != 0 || current.lsbs[slot] != 0) && value != REMOVED && (value & 0xFFFFFFFFL) < cutoff) {
+                LONGS.setRelease(current.values, slot, REMOVED);
+                removed++;
+            }
+        }
+        current.removed += removed;
+        return removed;
+    }
+
+    public int size() {
+        Table current = table;
+        return current.size - current.removed;
+    }
+
+    public long getSizeBytes() {
+        return table.capacity * 24L;
+    }
+
+    private synchronized void insert(long msb, long lsb, int serverId, long lastSeenMillis) {
+        Table current = table;
+        // Removed entries still fill their slots, so they count towards the load factor until a resize drops them
+        if ((current.size + 1) * 4L > current.capacity * 3L) {
+            current = resize(current);
+        }
+
+        long value = ((long) serverId << 32) | (TimeUnit.MILLISECONDS.toSeconds(lastSeenMillis) & 0xFFFFFFFFL);
+        int mask = current.capacity - 1;
+        for (int slot = current.slotOf(msb, lsb); ; slot = (slot + 1) & mask) {
+            long storedMsb = current.msbs[slot];
+            long storedLsb = current.lsbs[slot];
+            if (storedMsb == msb && storedLsb == lsb) {
+                long stored = current.values[slot];
+                if (stored == REMOVED) {
+                    current.removed--;
+                    LONGS.setRelease(current.values, slot, value);
+                } else if ((value & 0xFFFFFFFFL) >= (stored & 0xFFFFFFFFL)) {
+                    // Never go back in time, a row streamed at startup may be older than a save made meanwhile
+                    LONGS.setRelease(current.values, slot, value);
+                }
+                return;
+            }
+            if (storedMsb == 0 && storedLsb == 0) {
+                // Value and lsb first, the msb release publishes the entry
+                current.values[slot] = value;
+                current.lsbs[slot] = lsb;
+                LONGS.setRelease(current.msbs, slot, msb);
+                current.size++;
+                return;
+            }
+        }
+    }
+
+    // Doubles the table off to the side and swaps it in; readers keep using the old one until then
+    private Table resize(Table old) {
+        Table bigger = new Table(old.capacity * 2);
+        int mask = bigger.capacity - 1;
+        for (int i = 0; i < old.capacity; i++) {
+            long msb = old.msbs[i];
+            long lsb = old.lsbs[i];
+            if ((msb == 0 && lsb == 0) || old.values[i] == REMOVED) {
+                continue;
+            }
+            int slot = bigger.slotOf(msb, lsb);
+            while (bigger.msbs[slot] != 0 || bigger.lsbs[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            bigger.msbs[slot] = msb;
+            bigger.lsbs[slot] = lsb;
+            bigger.values[slot] = old.values[i];
+            bigger.size++;
+        }
+        table = bigger;
+        return bigger;
+    }
+
+    private int internServer(String serverName) {
+        Integer id = serverIds.get(serverName);
+        if (id != null) {
+            return id;
+        }
+        synchronized (serverIds) {
+            return serverIds.computeIfAbsent(serverName, name -> {
+                String[] names = Arrays.copyOf(serverNames, serverNames.length + 1);
+                names[names.length - 1] = name;
+                serverNames = names;
+                return names.length - 1;
+            });
+        }
+    }
+
+    private String serverName(int id) {
+        String[] names = serverNames;
+        return id < names.length ? names[id] : null;
+    }
+
+    private long catchUp(Connection conn, ServerDictionary dictionary, long since) throws SQLException {
+        long players = 0;
+
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_SINCE)) {
+            stmt.setTimestamp(1, new Timestamp(since));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = UuidCodec.fromBytes(rs.getBytes(1));
+                    String serverName = dictionary.resolveName(conn, rs.getInt(2));
+                    Timestamp lastSeen = rs.getTimestamp(3);
+                    if (uuid != null && serverName != null && lastSeen != null) {
+                        put(uuid, serverName, lastSeen.getTime());
+                        players++;
+                    }
+                }
+            }
+        }
+        return players;
+    }
+
+    private long stream(Connection conn, ServerDictionary dictionary, boolean legacy) throws SQLException {
+        long players = 0;
+        // Rows for servers registered after the dictionary was loaded, looked up once streaming is done
+        List<DeferredRow> deferred = new ArrayList<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(legacy ? SELECT_LEGACY : SELECT_ALL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = legacy ? parseLegacy(rs.getString(1)) : UuidCodec.fromBytes(rs.getBytes(1));
+                    String serverName = legacy ? rs.getString(2) : dictionary.getName(rs.getInt(2));
+                    Timestamp lastSeen = rs.getTimestamp(3);
+                    if (uuid == null || lastSeen == null) {
+                        continue;
+                    }
+                    if (serverName == null) {
+                        if (!legacy) {
+                            deferred.add(new DeferredRow(uuid, rs.getInt(2), lastSeen.getTime()));
+                        }
+                        continue;
+                    }
+                    put(uuid, serverName, lastSeen.getTime());
+                    players++;
+                }
+            }
+        }
+
+        for (DeferredRow row : deferred) {
+            String serverName = dictionary.resolveName(conn, row.serverId());
+            if (serverName != null) {
+                put(row.uuid(), serverName, row.lastSeen());
+                players++;
+            }
+        }
+        return players;
+    }
+
+    private static UUID parseLegacy(String value) {
+        try {
+            return value != null ? UUID.fromString(value) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private record DeferredRow(UUID uuid, int serverId, long lastSeen) {
+    }
+
+    @FunctionalInterface
+    interface EntryVisitor {
+        void visit(long msb, long lsb, String serverName, long lastSeenSeconds);
+    }
+
+    private static final class Table {
+        final int capacity;
+        final long[] msbs;
+        final long[] lsbs;
+        final long[] values;
+        // Slots in use, removed entries included
+        int size;
+        int removed;
+
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.msbs = new long[capacity];
+            this.lsbs = new long[capacity];
+            this.values = new long[capacity];
+        }
+
+        int slotOf(long msb, long lsb) {
+            long hash = msb ^ Long.rotateLeft(lsb, 32);
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return (int) hash & (capacity - 1);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.lastserver.database;
+
+// Everything a login needs from the player's row, read in a single primary key lookup.
+// The inactivity policy is applied on top of this in ServerManager, so a profile can be cached as-is.
+public record PlayerProfile(boolean exists, String serverName, long lastSeen, long firstJoined) {
+
+    public static final PlayerProfile NOT_FOUND = new PlayerProfile(false, null, 0L, 0L);
+
+    // What the row looks like right after we save it, keeping the join date if we already knew it
+    PlayerProfile withServer(String serverName, long lastSeen) {
+        return new PlayerProfile(true, serverName, lastSeen, firstJoined);
+    }
+
+    public boolean isFirstTime() {
+        return !exists;
+    }
+}
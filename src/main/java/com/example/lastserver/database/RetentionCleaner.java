@@ -0,0 +1,145 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+import com.example.lastserver.config.Configuration;
+
+import java.sql.Timestamp;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Deletes expired rows a chunk at a time, pausing between chunks and backing off while logins are busy
+public class RetentionCleaner {
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+    // A proxy that is never quiet enough gets its cleanup on the next run instead of waiting forever
+    private static final long MAX_BUSY_WAIT = TimeUnit.MINUTES.toMillis(10);
+    private static final int PROGRESS_LOG_CHUNKS = 20;
+
+    private final LastServer plugin;
+    private final ServerManager serverManager;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile long deletedThisRun;
+    private volatile long lastRunDeleted;
+    private volatile long lastRunFinished;
+    private long lastSampleTime;
+    private long lastSampleLogins;
+
+    public RetentionCleaner(LastServer plugin, ServerManager serverManager) {
+        this.plugin = plugin;
+        this.serverManager = serverManager;
+    }
+
+    // Starts a cleanup pass unless one is already running; completes with the number of rows deleted
+    public CompletableFuture<Integer> run() {
+        if (!running.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        Thread.ofVirtual().name("lastserver-cleanup").start(() -> {
+            try {
+                result.complete(cleanup());
+            } catch (Exception e) {
+                plugin.getLogger().error("Retention cleanup failed", e);
+                result.complete(0);
+            } finally {
+                running.set(false);
+            }
+        });
+        return result;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public long getDeletedThisRun() {
+        return deletedThisRun;
+    }
+
+    public long getLastRunDeleted() {
+        return lastRunDeleted;
+    }
+
+    public long getLastRunFinished() {
+        return lastRunFinished;
+    }
+
+    private int cleanup() throws InterruptedException {
+        Configuration config = plugin.getConfiguration();
+        MySQL mysql = plugin.getMySQL();
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(config.getRetentionDays()));
+        int chunkSize = config.getCleanupChunkSize();
+
+        int total = 0;
+        int chunks = 0;
+        deletedThisRun = 0;
+        lastSampleTime = System.currentTimeMillis();
+        lastSampleLogins = serverManager.getLoginCount();
+
+        while (mysql.isConnected()) {
+            // Logins matter more than cleanup, so wait until the proxy quiets down
+            long backoff = config.getCleanupChunkPause();
+            long waitingSince = System.currentTimeMillis();
+            boolean busy;
+            while ((busy = isBusy()) && mysql.isConnected() && System.currentTimeMillis() - waitingSince < MAX_BUSY_WAIT) {
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+            if (busy) {
+                if (mysql.isConnected()) {
+                    plugin.getLogger().info("Retention cleanup stopped early, the proxy stayed busy for {} minutes",
+                        TimeUnit.MILLISECONDS.toMinutes(MAX_BUSY_WAIT));
+                }
+                break;
+            }
+
+            int deleted = mysql.deleteExpiredChunk(cutoff, chunkSize).join();
+            if (deleted < 0) {
+                break;
+            }
+
+            total += deleted;
+            chunks++;
+            deletedThisRun = total;
+
+            if (deleted < chunkSize) {
+                break;
+            }
+
+            if (chunks % PROGRESS_LOG_CHUNKS == 0) {
+                plugin.getLogger().info("Retention cleanup in progress: {} old entries deleted so far", total);
+            }
+
+            Thread.sleep(config.getCleanupChunkPause());
+        }
+
+        // Also catches rows another proxy's cleanup deleted; a player dropped too early just falls back to MySQL
+        PlayerMirror mirror = serverManager.getMirror();
+        if (mirror != null) {
+            mirror.removeOlderThan(cutoff.getTime());
+        }
+
+        lastRunDeleted = total;
+        lastRunFinished = System.currentTimeMillis();
+        if (total > 0) {
+            plugin.getLogger().info("Cleaned up {} old entries from database in {} chunks", total, chunks);
+        }
+        return total;
+    }
+
+    private boolean isBusy() {
+        long now = System.currentTimeMillis();
+        long logins = serverManager.getLoginCount();
+        long elapsed = Math.max(1, now - lastSampleTime);
+        double loginsPerSecond = (logins - lastSampleLogins) * 1000.0 / elapsed;
+
+        lastSampleTime = now;
+        lastSampleLogins = logins;
+
+        // A few queued calls are normal under steady traffic; only back off once they pile up past half the pool
+        DatabaseExecutor executor = plugin.getMySQL().getExecutor();
+        return loginsPerSecond > plugin.getConfiguration().getCleanupMaxLoginRate() ||
+            executor.getQueueDepth() > executor.getMaxConcurrency() / 2;
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Copies the old VARCHAR(36) last_server table into last_server_v2 in small primary key ordered chunks.
+// The proxy keeps serving logins meanwhile: writes go to v2, and reads fall back to the old table until it is done.
+public class SchemaMigrator {
+    static final String LEGACY_TABLE = "last_server";
+    static final int SCHEMA_VERSION = 2;
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final long CHUNK_PAUSE = 50;
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(5);
+    // MySQL's ER_NO_SUCH_TABLE
+    private static final int NO_SUCH_TABLE = 1146;
+
+    private static final String SELECT_META = "SELECT meta_value FROM lastserver_meta WHERE meta_key = ?";
+    private static final String UPSERT_META = """
+        INSERT INTO lastserver_meta (meta_key, meta_value) VALUES (?, ?)
+        ON DUPLICATE KEY UPDATE meta_value = VALUES(meta_value)
+        """;
+
+    private static final String SELECT_LEGACY_CHUNK = """
+        SELECT uuid, username, server_name, last_seen, first_joined FROM last_server
+        WHERE uuid > ? ORDER BY uuid LIMIT ?
+        """;
+
+    // Rows saved to v2 since the upgrade are newer, so only carry over the original join date
+    private static final String COPY_ROW = """
+        INSERT INTO last_server_v2 (uuid, username, server_id, last_seen, first_joined) VALUES (?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE first_joined = LEAST(first_joined, VALUES(first_joined)), last_seen = last_seen
+        """;
+
+    private static final String ADD_FIRST_JOINED =
+        "ALTER TABLE last_server ADD COLUMN IF NOT EXISTS first_joined TIMESTAMP DEFAULT CURRENT_TIMESTAMP";
+
+    private final LastServer plugin;
+    private final MySQL mysql;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean migrating;
+    private volatile long migratedRows;
+
+    SchemaMigrator(LastServer plugin, MySQL mysql) {
+        this.plugin = plugin;
+        this.mysql = mysql;
+    }
+
+    // Returns true if there is a legacy table left to copy
+    boolean prepare(Connection conn) throws SQLException {
+        if (!tableExists(conn, LEGACY_TABLE)) {
+            writeMeta(conn, "schema_version", String.valueOf(SCHEMA_VERSION));
+            migrating = false;
+            return false;
+        }
+
+        //Migration for 2.0 discord chat integration, old tables may still be missing first_joined
+        try (PreparedStatement stmt = conn.prepareStatement(ADD_FIRST_JOINED)) {
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            // Column might already exist, that's fine
+            if (plugin.getConfiguration().isDebug()) {
+                plugin.getLogger().info("first_joined column already exists or could not be added");
+            }
+        }
+
+        migrating = true;
+        return true;
+    }
+
+    void start() {
+        // A reconnect during migration keeps using the thread that is already copying
+        if (!migrating || !running.compareAndSet(false, true)) {
+            return;
+        }
+
+        plugin.getLogger().info("Migrating last_server to the compact v2 schema in the background...");
+        Thread.ofVirtual().name("lastserver-migration").start(this::run);
+    }
+
+    public boolean isMigrating() {
+        return migrating;
+    }
+
+    public long getMigratedRows() {
+        return migratedRows;
+    }
+
+    // Another proxy sharing the database finished the migration and renamed the old table
+    void legacyTableGone() {
+        if (migrating) {
+            migrating = false;
+            plugin.getLogger().info("Schema migration was finished by another proxy, no longer reading the old table");
+        }
+    }
+
+    static boolean isMissingTable(SQLException e) {
+        return e.getErrorCode() == NO_SUCH_TABLE;
+    }
+
+    private void run() {
+        try {
+            copyAll();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void copyAll() {
+        String cursor = null;
+        MySQL.Database copyingFrom = null;
+
+        while (migrating && mysql.isConnected()) {
+            MySQL.Database database = mysql.getDatabase();
+            // A reconnect may point at another database, which keeps its own cursor
+            if (database != copyingFrom) {
+                cursor = null;
+                copyingFrom = database;
+            }
+            try (Connection conn = database.pool().getConnection()) {
+                if (cursor == null) {
+                    if (readMeta(conn, "migration_done") != null) {
+                        legacyTableGone();
+                        return;
+                    }
+                    cursor = readMeta(conn, "migration_cursor");
+                    if (cursor == null) {
+                        cursor = "";
+                    }
+                }
+
+                String next = copyChunk(conn, database.dictionary(), cursor);
+                if (next == null) {
+                    finish(conn);
+                    return;
+                }
+
+                cursor = next;
+                writeMeta(conn, "migration_cursor", cursor);
+            } catch (SQLException e) {
+                if (isMissingTable(e)) {
+                    legacyTableGone();
+                    return;
+                }
+                plugin.getLogger().error("Schema migration chunk failed, retrying shortly", e);
+                if (!pause(RETRY_DELAY)) {
+                    return;
+                }
+                continue;
+            }
+
+            if (!pause(CHUNK_PAUSE)) {
+                return;
+            }
+        }
+    }
+
+    // Copies the next chunk after the cursor and returns the new cursor, or null once the table is exhausted
+    private String copyChunk(Connection conn, ServerDictionary dictionary, String cursor) throws SQLException {
+        String last = null;
+        int copied = 0;
+
+        try (PreparedStatement select = conn.prepareStatement(SELECT_LEGACY_CHUNK);
+             PreparedStatement insert = conn.prepareStatement(COPY_ROW)) {
+
+            select.setString(1, cursor);
+            select.setInt(2, CHUNK_SIZE);
+
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    last = rs.getString("uuid");
+
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(last.trim());
+                    } catch (IllegalArgumentException e) {
+                        continue;
+                    }
+
+                    String serverName = rs.getString("server_name");
+                    if (!MySQL.isValidServerName(serverName)) {
+                        continue;
+                    }
+
+                    insert.setBytes(1, UuidCodec.toBytes(uuid));
+                    insert.setString(2, rs.getString("username"));
+                    insert.setInt(3, dictionary.resolveId(conn, serverName.trim()));
+                    insert.setTimestamp(4, rs.getTimestamp("last_seen"));
+                    insert.setTimestamp(5, rs.getTimestamp("first_joined"));
+                    insert.addBatch();
+                    copied++;
+                }
+            }
+
+            if (copied > 0) {
+                insert.executeBatch();
+            }
+        }
+
+        migratedRows += copied;
+        return last;
+    }
+
+    private void finish(Connection conn) throws SQLException {
+        // Keep the old rows around as a backup instead of dropping them
+        try (PreparedStatement stmt = conn.prepareStatement("RENAME TABLE last_server TO last_server_legacy")) {
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            // Another proxy sharing the database may have finished first
+            if (tableExists(conn, LEGACY_TABLE)) {
+                throw e;
+            }
+        }
+
+        writeMeta(conn, "schema_version", String.valueOf(SCHEMA_VERSION));
+        writeMeta(conn, "migration_done", String.valueOf(System.currentTimeMillis()));
+        migrating = false;
+        plugin.getLogger().info("Schema migration complete, copied {} rows. The old table was kept as last_server_legacy.", migratedRows);
+    }
+
+    private boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getTables(conn.getCatalog(), null, table, new String[] {"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    private static String readMeta(Connection conn, String key) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_META)) {
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("meta_value") : null;
+            }
+        }
+    }
+
+    private static void writeMeta(Connection conn, String key, String value) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_META)) {
+            stmt.setString(1, key);
+            stmt.setString(2, value);
+            stmt.executeUpdate();
+        }
+    }
+}
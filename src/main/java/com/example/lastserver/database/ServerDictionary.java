@@ -0,0 +1,89 @@
+package com.example.lastserver.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps server names to the small ids stored in last_server_v2.server_id
+public class ServerDictionary {
+    private static final String SELECT_ALL = "SELECT id, name FROM server_names";
+    private static final String SELECT_BY_ID = "SELECT name FROM server_names WHERE id = ?";
+    private static final String SELECT_BY_NAME = "SELECT id FROM server_names WHERE name = ?";
+    private static final String INSERT_NAME = "INSERT IGNORE INTO server_names (name) VALUES (?)";
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> names = new ConcurrentHashMap<>();
+
+    void load(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_ALL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                remember(rs.getInt("id"), rs.getString("name"));
+            }
+        }
+    }
+
+    void clear() {
+        ids.clear();
+        names.clear();
+    }
+
+    // Returns the id for a server, registering it the first time it is seen
+    int resolveId(Connection conn, String name) throws SQLException {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_NAME)) {
+            insert.setString(1, name);
+            insert.executeUpdate();
+        }
+
+        // Another proxy may have registered it first, so always read the id back
+        try (PreparedStatement select = conn.prepareStatement(SELECT_BY_NAME)) {
+            select.setString(1, name);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Server name was not registered: " + name);
+                }
+                int resolved = rs.getInt("id");
+                remember(resolved, name);
+                return resolved;
+            }
+        }
+    }
+
+    String resolveName(Connection conn, int id) throws SQLException {
+        String name = names.get(id);
+        if (name != null) {
+            return name;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_BY_ID)) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    name = rs.getString("name");
+                    remember(id, name);
+                }
+            }
+        }
+        return name;
+    }
+
+    public int getId(String name) {
+        return ids.getOrDefault(name, -1);
+    }
+
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    private void remember(int id, String name) {
+        ids.put(name, id);
+        names.put(id, name);
+    }
+}
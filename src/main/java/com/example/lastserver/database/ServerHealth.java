@@ -0,0 +1,14 @@
+package com.example.lastserver.database;
+
+// Latest known state of a backend as seen by the health monitor. checkedAt is 0 until the first ping finishes.
+public record ServerHealth(boolean online, long rttMillis, int playersOnline, int maxPlayers, int consecutiveFailures, long checkedAt) {
+    public static final ServerHealth UNKNOWN = new ServerHealth(false, -1, 0, 0, 0, 0);
+
+    public boolean isKnown() {
+        return checkedAt > 0;
+    }
+
+    public boolean isFull() {
+        return maxPlayers > 0 && playersOnline >= maxPlayers;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+import com.example.lastserver.config.Configuration;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Pings every registered backend in the background so routing can read a server's status without waiting.
+// Each round spreads the pings out with a random delay, and concurrent checks of one server share a single ping.
+public class ServerHealthMonitor {
+    private final LastServer plugin;
+    private final ConcurrentHashMap<String, ServerHealth> statuses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<ServerHealth>> inFlight = new ConcurrentHashMap<>();
+    private ScheduledTask roundTask;
+
+    public ServerHealthMonitor(LastServer plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        long interval = plugin.getConfiguration().getHealthCheckInterval();
+        roundTask = plugin.getServer().getScheduler()
+            .buildTask(plugin, this::runRound)
+            .repeat(interval, TimeUnit.MILLISECONDS)
+            .schedule();
+    }
+
+    // Restarts the round task with the current interval
+    public void reschedule() {
+        stop();
+        start();
+    }
+
+    public void stop() {
+        if (roundTask != null) {
+            roundTask.cancel();
+            roundTask = null;
+        }
+    }
+
+    // Last known status, never blocks
+    public ServerHealth getHealth(String serverName) {
+        return statuses.getOrDefault(serverName, ServerHealth.UNKNOWN);
+    }
+
+    // Uses the background status if it is recent, otherwise pings now (joining a ping already in flight)
+    public CompletableFuture<ServerHealth> checkNow(String serverName) {
+        ServerHealth health = getHealth(serverName);
+        if (health.isKnown() && System.currentTimeMillis() - health.checkedAt() < plugin.getConfiguration().getHealthCheckInterval()) {
+            return CompletableFuture.completedFuture(health);
+        }
+
+        RegisteredServer server = plugin.getServer().getServer(serverName).orElse(null);
+        if (server == null) {
+            statuses.remove(serverName);
+            return CompletableFuture.completedFuture(ServerHealth.UNKNOWN);
+        }
+        return check(server);
+    }
+
+    public void forget(String serverName) {
+        statuses.remove(serverName);
+    }
+
+    public int getOnlineCount() {
+        int online = 0;
+        for (ServerHealth health : statuses.values()) {
+            if (health.online()) {
+                online++;
+            }
+        }
+        return online;
+    }
+
+    public int getTrackedCount() {
+        return statuses.size();
+    }
+
+    private void runRound() {
+        long jitter = plugin.getConfiguration().getHealthCheckJitter();
+        Set<String> registered = new HashSet<>();
+
+        for (RegisteredServer server : plugin.getServer().getAllServers()) {
+            registered.add(server.getServerInfo().getName());
+            long delay = jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0;
+            if (delay == 0) {
+                check(server);
+            } else {
+                plugin.getServer().getScheduler()
+                    .buildTask(plugin, () -> check(server))
+                    .delay(delay, TimeUnit.MILLISECONDS)
+                    .schedule();
+            }
+        }
+
+        // Servers removed from the proxy shouldn't linger as "down"
+        statuses.keySet().retainAll(registered);
+    }
+
+    private CompletableFuture<ServerHealth> check(RegisteredServer server) {
+        String serverName = server.getServerInfo().getName();
+        CompletableFuture<ServerHealth> existing = inFlight.get(serverName);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletableFuture<ServerHealth> result = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(serverName, result);
+        if (existing != null) {
+            return existing;
+        }
+
+        long start = System.nanoTime();
+        server.ping()
+            .orTimeout(plugin.getConfiguration().getHealthCheckTimeout(), TimeUnit.MILLISECONDS)
+            .handle((ping, error) -> record(serverName, ping, error, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)))
+            .whenComplete((health, error) -> {
+                inFlight.remove(serverName, result);
+                result.complete(health != null ? health : getHealth(serverName));
+            });
+        return result;
+    }
+
+    private ServerHealth record(String serverName, ServerPing ping, Throwable error, long rtt) {
+        Configuration config = plugin.getConfiguration();
+        long now = System.currentTimeMillis();
+
+        ServerHealth updated = statuses.compute(serverName, (name, previous) -> {
+            if (error == null && ping != null) {
+                int online = ping.getPlayers().map(ServerPing.Players::getOnline).orElse(0);
+                int max = ping.getPlayers().map(ServerPing.Players::getMax).orElse(0);
+                return new ServerHealth(true, rtt, online, max, 0, now);
+            }
+
+            // A single lost ping doesn't take a server out of rotation, only a run of them does
+            int failures = previous != null ? previous.consecutiveFailures() + 1 : 1;
+            boolean online = previous != null && previous.online() && failures < config.getHealthCheckDownAfter();
+            return new ServerHealth(online, -1, 0, previous != null ? previous.maxPlayers() : 0, failures, now);
+        });
+
+        if (config.isDebug() && error != null) {
+            plugin.getLogger().info("Health check for {} failed ({} in a row): {}", serverName,
+                updated.consecutiveFailures(), error.getMessage());
+        }
+        return updated;
+    }
+}
@@ -1,72 +1,279 @@
 package com.example.lastserver.database;
 
 import com.example.lastserver.LastServer;
+import com.example.lastserver.config.Configuration;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ServerManager {
     private final LastServer plugin;
-    private final ConcurrentHashMap<String, ServerStatus> serverStatusCache;
-    private final ConcurrentHashMap<String, Long> playerCache;
-    private static final long CACHE_DURATION = TimeUnit.SECONDS.toMillis(30);
-    private static final long SERVER_CACHE_DURATION = TimeUnit.SECONDS.toMillis(5);
+    private final ServerHealthMonitor healthMonitor;
+    private final FallbackRouter fallbackRouter;
+    private final KnownPlayerFilter knownPlayers;
+    private final PlayerMirror mirror;
+    private final PlayerCache playerCache;
+    private final WriteBehindQueue writeBehindQueue;
+    private final WriteJournal writeJournal;
+    private final LoginPrefetcher loginPrefetcher;
+    private final ConcurrentHashMap<UUID, PlayerProfile> sessionProfiles;
+    private final RetentionCleaner retentionCleaner;
+    private final AtomicLong loginCount;
 
     public ServerManager(LastServer plugin) {
         this.plugin = plugin;
-        this.serverStatusCache = new ConcurrentHashMap<>();
-        this.playerCache = new ConcurrentHashMap<>();
+        this.healthMonitor = new ServerHealthMonitor(plugin);
+        this.healthMonitor.start();
+        this.fallbackRouter = new FallbackRouter(plugin, healthMonitor);
+        this.knownPlayers = new KnownPlayerFilter(plugin);
+        this.mirror = plugin.getConfiguration().isMirrorEnabled() ? new PlayerMirror(plugin) : null;
+        if (mirror != null) {
+            mirror.load();
+        }
+        this.playerCache = new PlayerCache(plugin);
+        this.writeJournal = new WriteJournal(plugin, plugin.getDataDirectory().resolve("journal"));
+        this.writeJournal.open();
+        // Saves a previous run couldn't write are known players too, or they would look brand new until the replay
+        writeJournal.getPendingPlayers().forEach(knownPlayers::add);
+        this.writeBehindQueue = new WriteBehindQueue(plugin, writeJournal);
+        this.writeBehindQueue.start();
+        this.loginPrefetcher = new LoginPrefetcher(this::loadProfile);
+        this.sessionProfiles = new ConcurrentHashMap<>();
+        this.retentionCleaner = new RetentionCleaner(plugin, this);
+        this.loginCount = new AtomicLong();
+        
+        plugin.getServer().getScheduler()
+            .buildTask(plugin, loginPrefetcher::pruneExpired)
+            .repeat(30, TimeUnit.SECONDS)
+            .schedule();
+        
+        // Rebuild the known player filter now and then to pick up players saved by other proxies
+        long rebuildInterval = plugin.getConfiguration().getKnownPlayersRebuildInterval();
+        plugin.getServer().getScheduler()
+            .buildTask(plugin, knownPlayers::rebuild)
+            .repeat(rebuildInterval, TimeUnit.MILLISECONDS)
+            .schedule();
+        
+        // Snapshot the mirror so the next startup doesn't have to read the whole table
+        if (mirror != null) {
+            long snapshotInterval = plugin.getConfiguration().getMirrorSnapshotInterval();
+            plugin.getServer().getScheduler()
+                .buildTask(plugin, mirror::saveSnapshot)
+                .delay(snapshotInterval, TimeUnit.MILLISECONDS)
+                .repeat(snapshotInterval, TimeUnit.MILLISECONDS)
+                .schedule();
+        }
+        
+        // Replay journaled saves once the database is healthy again
+        plugin.getServer().getScheduler()
+            .buildTask(plugin, this::replayJournal)
+            .delay(5, TimeUnit.SECONDS)
+            .repeat(5, TimeUnit.SECONDS)
+            .schedule();
+    }
+
+    public void applyConfiguration(Configuration previous) {
+        if (plugin.getConfiguration().getWriteBehindFlushInterval() != previous.getWriteBehindFlushInterval()) {
+            writeBehindQueue.reschedule();
+        }
+        
+        if (plugin.getConfiguration().getHealthCheckInterval() != previous.getHealthCheckInterval()) {
+            healthMonitor.reschedule();
+        }
+        fallbackRouter.clearRings();
+        
+        if (!plugin.getConfiguration().hasSameDatabase(previous)) {
+            // Everything remembered about players came from the old database
+            playerCache.clear();
+            sessionProfiles.clear();
+            loginPrefetcher.clear();
+            writeBehindQueue.forgetAllWritten();
+            knownPlayers.reset();
+            if (mirror != null) {
+                mirror.reload();
+            }
+        } else if (plugin.getConfiguration().isKnownPlayersEnabled() != previous.isKnownPlayersEnabled() ||
+            plugin.getConfiguration().isKnownPlayersSingleProxy() != previous.isKnownPlayersSingleProxy()) {
+            knownPlayers.rebuild();
+        }
+    }
+
+    public void shutdown() {
+        healthMonitor.stop();
+        writeBehindQueue.shutdown();
+        if (mirror != null) {
+            mirror.saveSnapshot();
+        }
+    }
+
+    public void prefetchProfile(UUID uuid) {
+        loginPrefetcher.prefetch(uuid);
+    }
+
+    // For a UUID the client claimed before authentication; skipped once too many are waiting
+    public void prefetchUnverifiedProfile(UUID uuid) {
+        loginPrefetcher.prefetchUnverified(uuid);
     }
 
-    public CompletableFuture<String> getLastServer(String uuid) {
-        Long cachedTime = playerCache.get(uuid);
-        if (cachedTime != null && System.currentTimeMillis() - cachedTime < CACHE_DURATION) {
-            return CompletableFuture.completedFuture(getCachedServer(uuid));
+    // Starts the player's session with one profile lookup, reusing the one begun at login if there is one.
+    // The result stays around so the first join embed doesn't need its own query.
+    public CompletableFuture<PlayerProfile> loadSessionProfile(UUID uuid) {
+        loginCount.incrementAndGet();
+        
+        CompletableFuture<PlayerProfile> profile = loginPrefetcher.take(uuid);
+        if (profile == null) {
+            profile = loadProfile(uuid);
         }
         
-        return plugin.getMySQL().getLastServer(uuid).thenApply(server -> {
-            if (server != null) {
-                playerCache.put(uuid, System.currentTimeMillis());
+        return profile.thenApply(loaded -> {
+            if (loaded != null) {
+                sessionProfiles.put(uuid, loaded);
             }
-            return server;
+            return loaded;
         });
     }
 
-    public CompletableFuture<Void> saveLastServer(String uuid, String username, String serverName) {
-        if (plugin.getConfiguration().getBlacklistedServers().contains(serverName)) {
-            return CompletableFuture.completedFuture(null);
+    public CompletableFuture<Boolean> isFirstTimePlayer(UUID uuid) {
+        PlayerProfile profile = sessionProfiles.remove(uuid);
+        if (profile != null) {
+            return CompletableFuture.completedFuture(profile.isFirstTime());
         }
         
-        playerCache.remove(uuid);
-        return plugin.getMySQL().saveLastServer(uuid, username, serverName);
+        if (knownPlayers.isDefinitelyNew(uuid)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        
+        // No lookup this session (maintenance, bypass), so we have to ask
+        return plugin.getMySQL().getPlayerProfile(uuid)
+            .thenApply(loaded -> loaded != null && loaded.isFirstTime());
     }
 
-    public CompletableFuture<Boolean> isServerAvailable(String serverName) {
-        ServerStatus cached = serverStatusCache.get(serverName);
-        if (cached != null && System.currentTimeMillis() - cached.timestamp < SERVER_CACHE_DURATION) {
-            return CompletableFuture.completedFuture(cached.available);
+    public void startSession(UUID uuid) {
+        writeBehindQueue.forgetWritten(uuid);
+    }
+
+    public void endSession(UUID uuid) {
+        sessionProfiles.remove(uuid);
+    }
+
+    private CompletableFuture<PlayerProfile> loadProfile(UUID uuid) {
+        PlayerProfile cached = playerCache.get(uuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        // Never saved before, so there is nothing to look up
+        if (knownPlayers.isDefinitelyNew(uuid)) {
+            return CompletableFuture.completedFuture(PlayerProfile.NOT_FOUND);
+        }
+        
+        // Mirror mode answers from memory; a miss is a player first saved by another proxy, so ask MySQL
+        if (mirror != null && mirror.isLoaded()) {
+            PlayerProfile mirrored = mirror.get(uuid);
+            if (mirrored != null) {
+                return CompletableFuture.completedFuture(mirrored);
+            }
+        }
+        
+        return plugin.getMySQL().getPlayerProfile(uuid).thenApply(profile -> {
+            if (profile != null && profile.exists()) {
+                playerCache.put(uuid, profile);
+            }
+            return profile;
+        });
+    }
+
+    // Applies the inactivity policy for the server the player was last on, or null if they should start fresh
+    public String getActiveLastServer(PlayerProfile profile) {
+        if (profile == null || profile.serverName() == null) {
+            return null;
         }
         
-        return CompletableFuture.supplyAsync(() -> {
-            RegisteredServer server = plugin.getServer().getServer(serverName).orElse(null);
-            if (server == null) {
-                serverStatusCache.put(serverName, new ServerStatus(false, System.currentTimeMillis()));
-                return false;
+        long inactiveFor = System.currentTimeMillis() - profile.lastSeen();
+        long allowed = TimeUnit.DAYS.toMillis(plugin.getConfiguration().getInactiveDays(profile.serverName()));
+        return inactiveFor < allowed ? profile.serverName() : null;
+    }
+
+    public CompletableFuture<Void> saveLastServer(UUID uuid, String username, String serverName) {
+        if (plugin.getConfiguration().isBlacklisted(serverName)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        // Write-through so a reconnect right after a switch never needs MySQL
+        if (uuid != null && serverName != null) {
+            playerCache.update(uuid, serverName);
+            knownPlayers.add(uuid);
+            if (mirror != null) {
+                mirror.put(uuid, serverName, System.currentTimeMillis());
             }
-            
-            try {
-                server.ping().get(3, TimeUnit.SECONDS);
-                serverStatusCache.put(serverName, new ServerStatus(true, System.currentTimeMillis()));
-                return true;
-            } catch (Exception e) {
-                serverStatusCache.put(serverName, new ServerStatus(false, System.currentTimeMillis()));
-                return false;
+        }
+        
+        if (plugin.getConfiguration().isWriteBehindEnabled() && uuid != null && username != null && serverName != null) {
+            return writeBehindQueue.enqueue(uuid, username, serverName);
+        }
+        
+        long timestamp = System.currentTimeMillis();
+        return plugin.getMySQL().saveLastServer(uuid, username, serverName, timestamp).thenAccept(saved -> {
+            if (!saved && plugin.getConfiguration().isJournalEnabled()) {
+                writeJournal.append(List.of(new JournalEntry(uuid, username, serverName, timestamp)));
             }
         });
     }
 
+    private void replayJournal() {
+        MySQL mysql = plugin.getMySQL();
+        // Also runs when the breaker is disabled or due a probe; the replay itself then acquires the permit
+        if (!writeJournal.hasPending() || !mysql.isConnected() || !mysql.getCircuitBreaker().wouldAllow()) {
+            return;
+        }
+        CompletableFuture.runAsync(writeJournal::replay, mysql.getExecutor());
+    }
+
+    // Answers from the health monitor; only a server it hasn't seen yet costs a ping, shared with any concurrent callers
+    public CompletableFuture<Boolean> isServerAvailable(String serverName) {
+        ServerHealth health = healthMonitor.getHealth(serverName);
+        if (health.isKnown()) {
+            return CompletableFuture.completedFuture(health.online());
+        }
+        return healthMonitor.checkNow(serverName).thenApply(ServerHealth::online);
+    }
+
+    public ServerHealth getServerHealth(String serverName) {
+        return healthMonitor.getHealth(serverName);
+    }
+
+    // Healthy server for a fallback pool or server name, or null if none can take the player.
+    // The UUID keeps a player on the same member of a consistent-hash pool.
+    public RegisteredServer selectServer(String target, UUID uuid) {
+        return fallbackRouter.select(target, uuid);
+    }
+
+    public RegisteredServer selectAnyServer() {
+        return fallbackRouter.selectAny();
+    }
+
+    public boolean isServerFull(RegisteredServer server) {
+        return fallbackRouter.isFull(server);
+    }
+
+    // Null unless mirror mode is enabled
+    public PlayerMirror getMirror() {
+        return mirror;
+    }
+
+    public KnownPlayerFilter getKnownPlayers() {
+        return knownPlayers;
+    }
+
+    public ServerHealthMonitor getHealthMonitor() {
+        return healthMonitor;
+    }
+
     public boolean serverExists(String serverName) {
         return plugin.getServer().getServer(serverName).isPresent();
     }
@@ -76,37 +283,43 @@ public class ServerManager {
     }
 
     public CompletableFuture<Void> cleanupOldEntries() {
-        return plugin.getMySQL().cleanupOldEntries().thenAccept(deleted -> {
+        return retentionCleaner.run().thenAccept(deleted -> {
             if (deleted > 0 && plugin.getConfiguration().isDebug()) {
                 plugin.getLogger().info("Cleaned up {} old player entries", deleted);
             }
         });
     }
 
-    public void clearPlayerCache(String uuid) {
+    public void clearPlayerCache(UUID uuid) {
         playerCache.remove(uuid);
     }
 
-    public void clearServerCache(String serverName) {
-        serverStatusCache.remove(serverName);
+    public long getLoginCount() {
+        return loginCount.get();
     }
 
-    public void clearAllCaches() {
-        playerCache.clear();
-        serverStatusCache.clear();
+    public RetentionCleaner getRetentionCleaner() {
+        return retentionCleaner;
     }
 
-    private String getCachedServer(String uuid) {
-        return null;
+    public PlayerCache getPlayerCache() {
+        return playerCache;
     }
 
-    private static class ServerStatus {
-        final boolean available;
-        final long timestamp;
+    public WriteJournal getWriteJournal() {
+        return writeJournal;
+    }
 
-        ServerStatus(boolean available, long timestamp) {
-            this.available = available;
-            this.timestamp = timestamp;
-        }
+    public int getPendingWriteCount() {
+        return writeBehindQueue.getPendingCount();
+    }
+
+    public void clearServerCache(String serverName) {
+        healthMonitor.forget(serverName);
+    }
+
+    public void clearAllCaches() {
+        playerCache.clear();
+        sessionProfiles.clear();
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.example.lastserver.database;
+
+import java.util.UUID;
+
+// Converts between UUIDs and the 16 byte form stored in BINARY(16) columns, straight from the msb/lsb longs
+public final class UuidCodec {
+
+    private UuidCodec() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return toBytes(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public static byte[] toBytes(long msb, long lsb) {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (msb >>> (56 - i * 8));
+            bytes[i + 8] = (byte) (lsb >>> (56 - i * 8));
+        }
+        return bytes;
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) {
+            return null;
+        }
+
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | (bytes[i] & 0xFF);
+            lsb = (lsb << 8) | (bytes[i + 8] & 0xFF);
+        }
+        return new UUID(msb, lsb);
+    }
+}
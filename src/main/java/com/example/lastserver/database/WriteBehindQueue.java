@@ -0,0 +1,172 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class WriteBehindQueue {
+    private final LastServer plugin;
+    private final WriteJournal journal;
+    private final ConcurrentHashMap<UUID, PendingWrite> pending = new ConcurrentHashMap<>();
+    // Only valid within one session: another proxy may have saved the player while they were gone
+    private final ConcurrentHashMap<UUID, WrittenServer> lastWritten = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private ScheduledTask flushTask;
+
+    public WriteBehindQueue(LastServer plugin, WriteJournal journal) {
+        this.plugin = plugin;
+        this.journal = journal;
+    }
+
+    public void start() {
+        long interval = plugin.getConfiguration().getWriteBehindFlushInterval();
+        flushTask = plugin.getServer().getScheduler()
+            .buildTask(plugin, () -> CompletableFuture.runAsync(this::flush, plugin.getMySQL().getExecutor()))
+            .delay(interval, TimeUnit.MILLISECONDS)
+            .repeat(interval, TimeUnit.MILLISECONDS)
+            .schedule();
+    }
+
+    // Restarts the flush task with the current interval
+    public void reschedule() {
+        if (flushTask != null) {
+            flushTask.cancel();
+        }
+        start();
+    }
+
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+
+        // Waits for a flush that is already running, then drains everything that is left before the pool goes away
+        flushLock.lock();
+        try {
+            while (!pending.isEmpty()) {
+                if (!drain()) {
+                    break;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // A new login starts from whatever the row holds now, so its first save is always written
+    public void forgetWritten(UUID key) {
+        lastWritten.remove(key);
+    }
+
+    public void forgetAllWritten() {
+        lastWritten.clear();
+    }
+
+    public CompletableFuture<Void> enqueue(UUID key, String username, String serverName) {
+        // Skip the write entirely if this session already saved this server and last_seen is fresh enough
+        WrittenServer written = lastWritten.get(key);
+        if (written != null && written.serverName.equals(serverName) && !pending.containsKey(key) &&
+            System.currentTimeMillis() - written.timestamp < plugin.getConfiguration().getWriteBehindRefreshInterval()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Coalesce with any write still waiting for this player, keeping only the latest server
+        long now = System.currentTimeMillis();
+        PendingWrite write = pending.compute(key, (k, existing) -> existing == null
+            ? new PendingWrite(k, username, serverName, now, new CompletableFuture<>())
+            : existing.replace(username, serverName, now));
+
+        if (pending.size() >= plugin.getConfiguration().getWriteBehindBatchSize()) {
+            CompletableFuture.runAsync(this::flush, plugin.getMySQL().getExecutor());
+        }
+
+        return write.completion();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    // Skipped if another flush is already running, it picks up anything queued meanwhile on the next tick
+    void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+
+        try {
+            drain();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Returns false if a batch failed, so shutdown does not spin on a dead connection.
+    // Failed batches are journaled to disk rather than dropped.
+    private boolean drain() {
+        int batchSize = plugin.getConfiguration().getWriteBehindBatchSize();
+        List<PendingWrite> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+
+        for (UUID key : pending.keySet()) {
+            PendingWrite write = pending.remove(key);
+            if (write != null) {
+                batch.add(write);
+            }
+
+            if (batch.size() >= batchSize) {
+                if (!writeBatch(batch)) {
+                    return false;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        boolean success = writeBatch(batch);
+        pruneWritten();
+        return success;
+    }
+
+    private boolean writeBatch(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        int result = plugin.getMySQL().saveLastServers(batch);
+        long now = System.currentTimeMillis();
+        
+        if (result < 0 && plugin.getConfiguration().isJournalEnabled()) {
+            journal.append(batch.stream().map(PendingWrite::toJournalEntry).toList());
+        }
+
+        for (PendingWrite write : batch) {
+            if (result >= 0) {
+                lastWritten.put(write.uuid(), new WrittenServer(write.serverName(), now));
+            }
+            write.completion().complete(null);
+        }
+
+        return result >= 0;
+    }
+
+    private void pruneWritten() {
+        long cutoff = System.currentTimeMillis() - plugin.getConfiguration().getWriteBehindRefreshInterval();
+        lastWritten.values().removeIf(written -> written.timestamp < cutoff);
+    }
+
+    private static class WrittenServer {
+        final String serverName;
+        final long timestamp;
+
+        WrittenServer(String serverName, long timestamp) {
+            this.serverName = serverName;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.lastserver.database;
+
+import com.example.lastserver.LastServer;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// Append-only journal of saves that failed to reach MySQL, stored in memory-mapped segment files.
+// Segments are replayed oldest first once the database is back, keeping only the newest entry per player.
+public class WriteJournal {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final byte RECORD_MARKER = 1;
+    private static final int MAX_RECORD_SIZE = 1 + 8 + 8 + 8 + 1 + 255 + 1 + 255;
+
+    private final LastServer plugin;
+    private final Path directory;
+    private final List<Path> sealed = new ArrayList<>();
+    private MappedByteBuffer active;
+    private Path activePath;
+    private long nextSequence;
+    private boolean replaying;
+
+    public WriteJournal(LastServer plugin, Path directory) {
+        this.plugin = plugin;
+        this.directory = directory;
+    }
+
+    // Picks up segments left behind by a previous run so they get replayed
+    public synchronized void open() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> sequenceOf(path) >= 0)
+                    .sorted((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)))
+                    .forEach(sealed::add);
+            }
+            nextSequence = sealed.isEmpty() ? 0 : sequenceOf(sealed.get(sealed.size() - 1)) + 1;
+
+            if (!sealed.isEmpty()) {
+                plugin.getLogger().info("Found {} journal segments with saves waiting to be replayed", sealed.size());
+            }
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to open write journal in " + directory, e);
+        }
+    }
+
+    // Players with saves still waiting in the journal; they are in neither table until the replay
+    public synchronized Set<UUID> getPendingPlayers() {
+        seal();
+        try {
+            return readCompacted(new ArrayList<>(sealed)).keySet();
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to read the write journal", e);
+            return Set.of();
+        }
+    }
+
+    public synchronized boolean hasPending() {
+        return active != null || !sealed.isEmpty();
+    }
+
+    public synchronized int getSegmentCount() {
+        return sealed.size() + (active != null ? 1 : 0);
+    }
+
+    public synchronized boolean append(Collection<JournalEntry> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+        
+        try {
+            for (JournalEntry entry : entries) {
+                if (active == null || active.remaining() < MAX_RECORD_SIZE) {
+                    if (!roll()) {
+                        plugin.getLogger().error("Write journal is full, dropping saves until the database comes back");
+                        return false;
+                    }
+                }
+                writeRecord(active, entry);
+            }
+            active.force();
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to append " + entries.size() + " saves to the write journal", e);
+            return false;
+        }
+    }
+
+    // Sends everything journaled so far to MySQL in batches. Segments are only deleted once all of them made it,
+    // replaying twice is harmless because the upsert never moves a row backwards in time.
+    public void replay() {
+        List<Path> segments;
+        synchronized (this) {
+            if (replaying) {
+                return;
+            }
+            seal();
+            if (sealed.isEmpty()) {
+                return;
+            }
+            replaying = true;
+            segments = new ArrayList<>(sealed);
+        }
+
+        try {
+            List<JournalEntry> entries = new ArrayList<>(readCompacted(segments).values());
+            int batchSize = plugin.getConfiguration().getWriteBehindBatchSize();
+
+            for (int start = 0; start < entries.size(); start += batchSize) {
+                List<JournalEntry> batch = entries.subList(start, Math.min(entries.size(), start + batchSize));
+                if (plugin.getMySQL().replayLastServers(batch) < 0) {
+                    plugin.getLogger().warn("Journal replay stopped after {} of {} saves, will retry", start, entries.size());
+                    return;
+                }
+            }
+
+            synchronized (this) {
+                sealed.removeAll(segments);
+            }
+            for (Path segment : segments) {
+                Files.deleteIfExists(segment);
+            }
+            plugin.getLogger().info("Replayed {} journaled saves to the database", entries.size());
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to replay write journal", e);
+        } finally {
+            synchronized (this) {
+                replaying = false;
+            }
+        }
+    }
+
+    // Starts a new segment, compacting the sealed ones first if the journal has grown too large
+    private boolean roll() throws IOException {
+        seal();
+
+        int maxSegments = plugin.getConfiguration().getJournalMaxSegments();
+        if (sealed.size() >= maxSegments / 2 && !replaying) {
+            compact();
+        }
+        if (sealed.size() >= maxSegments) {
+            return false;
+        }
+
+        activePath = directory.resolve(SEGMENT_PREFIX + nextSequence++ + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(activePath,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, plugin.getConfiguration().getJournalSegmentSize());
+        }
+        return true;
+    }
+
+    private void seal() {
+        if (active != null) {
+            active.force();
+            sealed.add(activePath);
+            active = null;
+            activePath = null;
+        }
+    }
+
+    // Rewrites the sealed segments so only the newest entry per player remains
+    private void compact() throws IOException {
+        List<Path> old = new ArrayList<>(sealed);
+        Map<UUID, JournalEntry> newest = readCompacted(old);
+        sealed.clear();
+
+        for (JournalEntry entry : newest.values()) {
+            if (active == null || active.remaining() < MAX_RECORD_SIZE) {
+                seal();
+                activePath = directory.resolve(SEGMENT_PREFIX + nextSequence++ + SEGMENT_SUFFIX);
+                try (FileChannel channel = FileChannel.open(activePath,
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    active = channel.map(FileChannel.MapMode.READ_WRITE, 0, plugin.getConfiguration().getJournalSegmentSize());
+                }
+            }
+            writeRecord(active, entry);
+        }
+        seal();
+
+        for (Path segment : old) {
+            Files.deleteIfExists(segment);
+        }
+        plugin.getLogger().info("Compacted write journal from {} to {} segments ({} players)", old.size(), sealed.size(), newest.size());
+    }
+
+    // Reads segments in order; a later entry for the same player replaces the earlier one and moves to the end
+    private Map<UUID, JournalEntry> readCompacted(List<Path> segments) throws IOException {
+        Map<UUID, JournalEntry> newest = new LinkedHashMap<>();
+        for (Path segment : segments) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                JournalEntry entry;
+                while ((entry = readRecord(buffer)) != null) {
+                    newest.remove(entry.uuid());
+                    newest.put(entry.uuid(), entry);
+                }
+            }
+        }
+        return newest;
+    }
+
+    private static void writeRecord(MappedByteBuffer buffer, JournalEntry entry) {
+        byte[] username = entry.username().getBytes(StandardCharsets.UTF_8);
+        byte[] serverName = entry.serverName().getBytes(StandardCharsets.UTF_8);
+
+        buffer.put(RECORD_MARKER);
+        buffer.putLong(entry.uuid().getMostSignificantBits());
+        buffer.putLong(entry.uuid().getLeastSignificantBits());
+        buffer.putLong(entry.timestamp());
+        buffer.put((byte) Math.min(255, username.length));
+        buffer.put(username, 0, Math.min(255, username.length));
+        buffer.put((byte) Math.min(255, serverName.length));
+        buffer.put(serverName, 0, Math.min(255, serverName.length));
+    }
+
+    // Returns null at the end of the written region (zero fill) or at a record cut short by a crash
+    private static JournalEntry readRecord(MappedByteBuffer buffer) {
+        try {
+            if (!buffer.hasRemaining() || buffer.get() != RECORD_MARKER) {
+                return null;
+            }
+            long msb = buffer.getLong();
+            long lsb = buffer.getLong();
+            long timestamp = buffer.getLong();
+            byte[] username = new byte[buffer.get() & 0xFF];
+            buffer.get(username);
+            byte[] serverName = new byte[buffer.get() & 0xFF];
+            buffer.get(serverName);
+            return new JournalEntry(new UUID(msb, lsb), new String(username, StandardCharsets.UTF_8),
+                new String(serverName, StandardCharsets.UTF_8), timestamp);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.lastserver.discord;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.UUID;
+
+// One queued notification. Kept as plain fields so the dispatcher can serialize it straight into its buffer.
+// The route is the servers shown in the description, already mapped to display names; empty for none.
+public record Embed(Type type, UUID uuid, String username, List<String> route) {
+
+    // Colors matching DiscordSRV style
+    public enum Type {
+        JOIN(" joined the server", new Color(0, 255, 0)),                             // Green
+        FIRST_JOIN(" joined the server for the first time!", new Color(255, 215, 0)), // Gold
+        LEAVE(" left the server", new Color(255, 0, 0)),                              // Red
+        SWITCH(" switched servers", new Color(255, 165, 0));                          // Orange
+
+        final String titleSuffix;
+        final int color;
+
+        Type(String titleSuffix, Color color) {
+            this.titleSuffix = titleSuffix;
+            this.color = color.getRGB() & 0xFFFFFF;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.lastserver.discord;
+
+import com.example.lastserver.LastServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Collapses a player's burst of join and switch events into one embed, e.g. joined then lobby → smp → creative.
+// A burst is sent once the player has been quiet for the window, or after four windows if they keep hopping.
+// Leaves end the burst right away, so the order of messages in the channel stays right.
+class EmbedAggregator {
+    private static final int MAX_ROUTE = 10;
+    private static final int MAX_WINDOWS = 4;
+
+    private final LastServer plugin;
+    private final Consumer<Embed> sink;
+    private final ConcurrentHashMap<UUID, Burst> bursts = new ConcurrentHashMap<>();
+    private final AtomicLong merged = new AtomicLong();
+
+    EmbedAggregator(LastServer plugin, Consumer<Embed> sink) {
+        this.plugin = plugin;
+        this.sink = sink;
+    }
+
+    void add(Embed embed) {
+        if (embed.type() == Embed.Type.LEAVE) {
+            Burst previous = bursts.remove(embed.uuid());
+            if (previous != null) {
+                sink.accept(previous.toEmbed());
+            }
+            sink.accept(embed);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Embed> replaced = new ArrayList<>(1);
+        bursts.compute(embed.uuid(), (uuid, burst) -> {
+            if (burst != null && burst.append(embed, now)) {
+                merged.incrementAndGet();
+                return burst;
+            }
+            if (burst != null) {
+                replaced.add(burst.toEmbed());
+            }
+            return new Burst(embed, now);
+        });
+        replaced.forEach(sink);
+    }
+
+    // Sends every burst that has been quiet for the window, called about once a second
+    void flushDue() {
+        long window = plugin.getConfiguration().getDiscordAggregateWindow();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<UUID, Burst> entry : bursts.entrySet()) {
+            Burst burst = entry.getValue();
+            if (burst.isDue(now, window) && bursts.remove(entry.getKey(), burst)) {
+                sink.accept(burst.toEmbed());
+            }
+        }
+    }
+
+    void flushAll() {
+        for (UUID uuid : bursts.keySet()) {
+            Burst burst = bursts.remove(uuid);
+            if (burst != null) {
+                sink.accept(burst.toEmbed());
+            }
+        }
+    }
+
+    long getMergedCount() {
+        return merged.get();
+    }
+
+    // Only changed inside compute and read once removed from the map, so it needs no locking of its own
+    private static class Burst {
+        final Embed.Type type;
+        final UUID uuid;
+        final long startedAt;
+        final List<String> route;
+        String username;
+        volatile long lastEventAt;
+
+        Burst(Embed first, long now) {
+            this.type = first.type();
+            this.uuid = first.uuid();
+            this.username = first.username();
+            this.route = new ArrayList<>(first.route());
+            this.startedAt = now;
+            this.lastEventAt = now;
+        }
+
+        // Switches extend a join or switch burst; anything else starts a new one
+        boolean append(Embed next, long now) {
+            if (next.type() != Embed.Type.SWITCH || route.isEmpty() || route.size() + next.route().size() > MAX_ROUTE) {
+                return false;
+            }
+
+            List<String> hops = next.route();
+            int skip = !hops.isEmpty() && hops.get(0).equals(route.get(route.size() - 1)) ? 1 : 0;
+            route.addAll(hops.subList(skip, hops.size()));
+            username = next.username();
+            lastEventAt = now;
+            return true;
+        }
+
+        boolean isDue(long now, long window) {
+            return now - lastEventAt >= window || now - startedAt >= window * MAX_WINDOWS;
+        }
+
+        Embed toEmbed() {
+            return new Embed(type, uuid, username, List.copyOf(route));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.lastserver.discord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+// Writes webhook messages as UTF-8 JSON into one reusable buffer, escaping player and server names.
+// The fixed parts of an embed are encoded once up front. Not thread safe; the dispatcher owns one.
+final class EmbedWriter {
+    private static final byte[] MESSAGE_START = ascii("{\"embeds\":[");
+    private static final byte[] MESSAGE_END = ascii("]}");
+    private static final byte[] AUTHOR_NAME = ascii("{\"author\":{\"name\":\"");
+    // Avatar services want the UUID without dashes
+    private static final byte[] AVATAR_URL = ascii("\",\"icon_url\":\"https://mc-heads.net/avatar/");
+    private static final byte[] AVATAR_END = ascii("/100\"}");
+    private static final byte[] DESCRIPTION = ascii(",\"description\":\"");
+    private static final byte[] ROUTE_SEPARATOR = "** → **".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BOLD = ascii("**");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+    private static final byte[][] TITLE_SUFFIXES = new byte[Embed.Type.values().length][];
+    private static final byte[][] COLORS = new byte[Embed.Type.values().length][];
+
+    static {
+        for (Embed.Type type : Embed.Type.values()) {
+            TITLE_SUFFIXES[type.ordinal()] = escape(type.titleSuffix);
+            COLORS[type.ordinal()] = ascii(",\"color\":" + type.color + "}");
+        }
+    }
+
+    private byte[] buffer = new byte[4096];
+    private int length;
+    private int embeds;
+
+    void beginMessage() {
+        length = 0;
+        embeds = 0;
+        write(MESSAGE_START);
+    }
+
+    void writeEmbed(Embed embed) {
+        if (embeds++ > 0) {
+            write((byte) ',');
+        }
+
+        write(AUTHOR_NAME);
+        writeEscaped(embed.username());
+        write(TITLE_SUFFIXES[embed.type().ordinal()]);
+        write(AVATAR_URL);
+        writeHex(embed.uuid().getMostSignificantBits());
+        writeHex(embed.uuid().getLeastSignificantBits());
+        write(AVATAR_END);
+
+        // No description for a single server - matches DiscordSRV's style
+        List<String> route = embed.route();
+        if (route.size() > 1) {
+            write(DESCRIPTION);
+            write(BOLD);
+            for (int i = 0; i < route.size(); i++) {
+                if (i > 0) {
+                    write(ROUTE_SEPARATOR);
+                }
+                writeEscaped(route.get(i));
+            }
+            write(BOLD);
+            write((byte) '"');
+        }
+
+        write(COLORS[embed.type().ordinal()]);
+    }
+
+    void endMessage() {
+        write(MESSAGE_END);
+    }
+
+    // Valid until the next beginMessage
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void writeHex(long bits) {
+        ensureCapacity(16);
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            buffer[length++] = HEX[(int) (bits >>> shift) & 0xF];
+        }
+    }
+
+    // JSON string contents, encoded as UTF-8 without going through a byte[] per string
+    private void writeEscaped(String value) {
+        ensureCapacity(value.length() * 6);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer[length++] = '\\';
+                buffer[length++] = (byte) c;
+            } else if (c < 0x20) {
+                writeControl(c);
+            } else if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                // A lone surrogate can't be encoded, use the replacement character
+                char encoded = Character.isSurrogate(c) ? '\uFFFD' : c;
+                buffer[length++] = (byte) (0xE0 | (encoded >> 12));
+                buffer[length++] = (byte) (0x80 | ((encoded >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (encoded & 0x3F));
+            }
+        }
+    }
+
+    private void writeControl(char c) {
+        buffer[length++] = '\\';
+        switch (c) {
+            case '\n' -> buffer[length++] = 'n';
+            case '\r' -> buffer[length++] = 'r';
+            case '\t' -> buffer[length++] = 't';
+            case '\b' -> buffer[length++] = 'b';
+            case '\f' -> buffer[length++] = 'f';
+            default -> {
+                buffer[length++] = 'u';
+                buffer[length++] = '0';
+                buffer[length++] = '0';
+                buffer[length++] = HEX[c >> 4];
+                buffer[length++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    private void write(byte value) {
+        ensureCapacity(1);
+        buffer[length++] = value;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] escape(String value) {
+        EmbedWriter writer = new EmbedWriter();
+        writer.writeEscaped(value);
+        return Arrays.copyOf(writer.buffer, writer.length);
+    }
+}
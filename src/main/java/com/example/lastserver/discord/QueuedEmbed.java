@@ -0,0 +1,6 @@
+package com.example.lastserver.discord;
+
+// An embed waiting to be delivered. The id is unique across restarts, so an embed recovered from the spool
+// is never queued twice and its delivery can be acknowledged on disk.
+record QueuedEmbed(long id, long createdAt, Embed embed) {
+}
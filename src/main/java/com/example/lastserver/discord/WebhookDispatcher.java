@@ -0,0 +1,365 @@
+package com.example.lastserver.discord;
+
+import com.example.lastserver.LastServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Sends webhook embeds from one thread over one keep-alive HttpClient. Embeds queue up while a request
+// is in flight or the webhook is rate limited, and go out up to 10 per message (Discord's limit), so a
+// join wave costs a handful of requests. Waits out 429s and the bucket reset instead of dropping embeds.
+// With the spool enabled every embed is on disk until Discord accepted it: an outage or restart only delays
+// it, and embeds that don't fit in the memory queue are read back from disk once it drains.
+public class WebhookDispatcher {
+    private static final int MAX_EMBEDS_PER_MESSAGE = 10;
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final Pattern RETRY_AFTER_BODY = Pattern.compile("\"retry_after\"\\s*:\\s*([0-9.]+)");
+
+    private final LastServer plugin;
+    private final BlockingQueue<QueuedEmbed> queue;
+    // Ids in the memory queue or being sent, so reading the spool back never queues one twice
+    private final Set<Long> outstanding = ConcurrentHashMap.newKeySet();
+    private final WebhookSpool spool;
+    private final EmbedAggregator aggregator;
+    private final HttpClient client;
+    private final EmbedWriter writer = new EmbedWriter();
+    private final AtomicLong nextId;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private volatile Thread worker;
+    private ScheduledTask aggregateTask;
+    private volatile boolean running;
+    // Set when an embed only made it to disk; the worker reads the spool once the memory queue is empty
+    private volatile boolean backlogOnDisk;
+    // Don't send before this time, set from 429s and an exhausted rate limit bucket
+    private volatile long blockedUntil;
+    private volatile long lastDropWarning;
+
+    public WebhookDispatcher(LastServer plugin) {
+        this.plugin = plugin;
+        this.queue = new ArrayBlockingQueue<>(plugin.getConfiguration().getDiscordQueueSize());
+        this.spool = plugin.getConfiguration().isDiscordSpoolEnabled()
+            ? new WebhookSpool(plugin, plugin.getDataDirectory().resolve("webhook-spool"))
+            : null;
+        this.client = HttpClient.newBuilder()
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+        this.aggregator = new EmbedAggregator(plugin, this::submit);
+        // Millisecond clock in the high bits keeps ids unique across restarts
+        this.nextId = new AtomicLong(System.currentTimeMillis() << 16);
+    }
+
+    public void start() {
+        if (spool != null) {
+            spool.open();
+            backlogOnDisk = true;
+        }
+        running = true;
+        worker = Thread.ofVirtual().name("lastserver-webhook").start(this::run);
+        aggregateTask = plugin.getServer().getScheduler()
+            .buildTask(plugin, aggregator::flushDue)
+            .repeat(1, TimeUnit.SECONDS)
+            .schedule();
+    }
+
+    // Gives queued embeds a few seconds to go out; with the spool the rest are sent after the next start
+    public void shutdown() {
+        if (aggregateTask != null) {
+            aggregateTask.cancel();
+        }
+        aggregator.flushAll();
+        running = false;
+        Thread thread = worker;
+        if (thread == null) {
+            client.close();
+            return;
+        }
+
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread.interrupt();
+        // Its selector thread and keep-alive connections would outlive a reload otherwise; a request still
+        // running after the grace period is aborted rather than waited for
+        client.shutdownNow();
+        client.close();
+
+        if (spool != null) {
+            spool.close();
+            if (!outstanding.isEmpty() || backlogOnDisk) {
+                plugin.getLogger().info("Unsent Discord embeds were left in the spool and will be sent after the next start");
+            }
+        } else if (!queue.isEmpty()) {
+            plugin.getLogger().warn("Discarding {} Discord embeds that could not be sent before shutdown", queue.size());
+        }
+    }
+
+    // Join and switch embeds wait in the player's aggregation window, unless it is turned off
+    public void enqueue(Embed embed) {
+        if (plugin.getConfiguration().getDiscordAggregateWindow() > 0) {
+            aggregator.add(embed);
+        } else {
+            submit(embed);
+        }
+    }
+
+    // Returns false if the embed was dropped because neither the memory queue nor the spool had room
+    private boolean submit(Embed embed) {
+        QueuedEmbed queued = new QueuedEmbed(nextId.incrementAndGet(), System.currentTimeMillis(), embed);
+        outstanding.add(queued.id());
+        boolean spooled = spool != null && spool.append(queued);
+        if (queue.offer(queued)) {
+            return true;
+        }
+
+        outstanding.remove(queued.id());
+        if (spooled) {
+            backlogOnDisk = true;
+            return true;
+        }
+
+        dropped.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (now - lastDropWarning > TimeUnit.MINUTES.toMillis(1)) {
+            lastDropWarning = now;
+            plugin.getLogger().warn("Discord webhook queue is full, dropping embeds ({} dropped so far)", dropped.get());
+        }
+        return false;
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public boolean hasBacklogOnDisk() {
+        return backlogOnDisk;
+    }
+
+    public int getSpoolSegmentCount() {
+        return spool != null ? spool.getSegmentCount() : 0;
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    public long getMergedCount() {
+        return aggregator.getMergedCount();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    private void run() {
+        List<QueuedEmbed> batch = new ArrayList<>(MAX_EMBEDS_PER_MESSAGE);
+        List<Long> ids = new ArrayList<>(MAX_EMBEDS_PER_MESSAGE);
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedEmbed first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (backlogOnDisk && running) {
+                        readBacklog();
+                    }
+                    continue;
+                }
+
+                batch.add(first);
+                waitForBucket();
+                queue.drainTo(batch, MAX_EMBEDS_PER_MESSAGE - 1);
+                for (QueuedEmbed queued : batch) {
+                    ids.add(queued.id());
+                }
+
+                send(batch);
+
+                // Acked before they leave the outstanding set, so the spool can't hand them out again
+                if (spool != null) {
+                    spool.ack(ids);
+                }
+                ids.forEach(outstanding::remove);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                plugin.getLogger().error("Unexpected error in the Discord webhook dispatcher", e);
+                // Not acked, so let the spool hand them out again instead of treating them as in flight for good
+                for (QueuedEmbed queued : batch) {
+                    outstanding.remove(queued.id());
+                }
+                if (spool != null && !batch.isEmpty()) {
+                    backlogOnDisk = true;
+                }
+            } finally {
+                batch.clear();
+                ids.clear();
+            }
+        }
+    }
+
+    private void readBacklog() {
+        backlogOnDisk = false;
+        int room = queue.remainingCapacity();
+        List<QueuedEmbed> recovered = spool.recover(outstanding, room, plugin.getConfiguration().getDiscordMaxAge());
+        for (QueuedEmbed queued : recovered) {
+            outstanding.add(queued.id());
+            if (!queue.offer(queued)) {
+                outstanding.remove(queued.id());
+                backlogOnDisk = true;
+            }
+        }
+
+        // There may be more than fit this time
+        if (!recovered.isEmpty() && recovered.size() >= room) {
+            backlogOnDisk = true;
+        }
+        if (!recovered.isEmpty() && plugin.getConfiguration().isDebug()) {
+            plugin.getLogger().info("Queued {} Discord embeds from the spool", recovered.size());
+        }
+    }
+
+    private void waitForBucket() throws InterruptedException {
+        long wait = blockedUntil - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    // Returns once every embed in the batch was delivered, rejected by Discord or too old to send.
+    // Server errors and network failures are retried with backoff for as long as the embeds are young enough.
+    private void send(List<QueuedEmbed> embeds) throws InterruptedException {
+        long backoff = 1000;
+        int failures = 0;
+        while (true) {
+            long cutoff = System.currentTimeMillis() - plugin.getConfiguration().getDiscordMaxAge();
+            int before = embeds.size();
+            embeds.removeIf(queued -> queued.createdAt() < cutoff);
+            if (embeds.size() < before) {
+                expired.addAndGet(before - embeds.size());
+                plugin.getLogger().warn("Dropped {} Discord embeds older than the configured maximum age", before - embeds.size());
+            }
+
+            String url = plugin.getConfiguration().getDiscordWebhookUrl();
+            if (embeds.isEmpty() || url == null || url.isEmpty()) {
+                return;
+            }
+
+            // Serialized straight into the writer's buffer, which is only reused once this send is done
+            writer.beginMessage();
+            for (QueuedEmbed queued : embeds) {
+                writer.writeEmbed(queued.embed());
+            }
+            writer.endMessage();
+
+            HttpRequest request;
+            try {
+                request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .header("User-Agent", "LastServer-Plugin/1.0")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(writer.buffer(), 0, writer.length()))
+                    .build();
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().error("Invalid Discord webhook URL: {}", e.getMessage());
+                return;
+            }
+
+            if (plugin.getConfiguration().isDebug()) {
+                plugin.getLogger().info("Sending webhook with {} embeds: {}", embeds.size(), writer);
+            }
+
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                int status = response.statusCode();
+                updateBucket(response);
+
+                if (status == 200 || status == 204) {
+                    sent.addAndGet(embeds.size());
+                    if (failures > 0) {
+                        plugin.getLogger().info("Discord webhook is reachable again");
+                    }
+                    return;
+                }
+
+                if (status == 429) {
+                    // Same batch again once Discord lets us; not a failure
+                    rateLimited.incrementAndGet();
+                    long retryAfter = getRetryAfter(response);
+                    blockedUntil = Math.max(blockedUntil, System.currentTimeMillis() + retryAfter);
+                    if (plugin.getConfiguration().isDebug()) {
+                        plugin.getLogger().info("Discord webhook rate limited, retrying in {}ms", retryAfter);
+                    }
+                    waitForBucket();
+                    continue;
+                }
+
+                if (status < 500) {
+                    // Bad URL, deleted webhook or malformed embed; retrying won't help
+                    plugin.getLogger().warn("Discord webhook returned unexpected code: {}", status);
+                    return;
+                }
+                plugin.getLogger().warn("Discord webhook returned {}, retrying in {}ms", status, backoff);
+            } catch (IOException e) {
+                plugin.getLogger().warn("Failed to send Discord webhook, retrying in {}ms: {}", backoff, e.getMessage());
+            }
+
+            failures++;
+            Thread.sleep(backoff);
+            backoff = Math.min(MAX_BACKOFF, backoff * 2);
+        }
+    }
+
+    // Discord tells us how many requests are left in the bucket and when it refills
+    private void updateBucket(HttpResponse<?> response) {
+        String remaining = response.headers().firstValue("X-RateLimit-Remaining").orElse(null);
+        String resetAfter = response.headers().firstValue("X-RateLimit-Reset-After").orElse(null);
+        if (!"0".equals(remaining) || resetAfter == null) {
+            return;
+        }
+
+        try {
+            long wait = (long) Math.ceil(Double.parseDouble(resetAfter) * 1000);
+            blockedUntil = Math.max(blockedUntil, System.currentTimeMillis() + wait);
+        } catch (NumberFormatException ignored) {
+            // Just send and let a 429 tell us
+        }
+    }
+
+    private static long getRetryAfter(HttpResponse<String> response) {
+        // The body has millisecond precision, the header only whole seconds
+        Matcher matcher = RETRY_AFTER_BODY.matcher(response.body() != null ? response.body() : "");
+        String value = matcher.find() ? matcher.group(1) : response.headers().firstValue("Retry-After").orElse("1");
+        try {
+            return Math.min(MAX_BACKOFF, Math.max(100, (long) Math.ceil(Double.parseDouble(value) * 1000)));
+        } catch (NumberFormatException e) {
+            return 1000;
+        }
+    }
+}
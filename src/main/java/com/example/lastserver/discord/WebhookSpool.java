@@ -0,0 +1,304 @@
+package com.example.lastserver.discord;
+
+import com.example.lastserver.LastServer;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// Every queued embed is written here before it is sent and acknowledged once Discord accepted it, so a restart
+// or a long outage delays notifications instead of losing them. Records and acks go into the same append-only
+// memory-mapped segments; acks always land after their record, so fully delivered segments are deleted oldest first.
+// Delivery is at least once: a crash between the send and the ack resends that message.
+class WebhookSpool {
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int SEGMENT_SIZE = 256 * 1024;
+    private static final byte RECORD_MARKER = 1;
+    private static final byte ACK_MARKER = 2;
+    private static final int ACK_SIZE = 1 + 8;
+    private static final long FULL_RESCAN_INTERVAL = 5000;
+
+    private final LastServer plugin;
+    private final Path directory;
+    private final List<Path> sealed = new ArrayList<>();
+    private MappedByteBuffer active;
+    private Path activePath;
+    private long nextSequence;
+    private boolean closed;
+    // Set while new records are refused, so the warning is only logged once
+    private boolean full;
+    private long lastFullScan;
+
+    WebhookSpool(LastServer plugin, Path directory) {
+        this.plugin = plugin;
+        this.directory = directory;
+    }
+
+    synchronized void open() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> sequenceOf(path) >= 0)
+                    .sorted((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)))
+                    .forEach(sealed::add);
+            }
+            nextSequence = sealed.isEmpty() ? 0 : sequenceOf(sealed.get(sealed.size() - 1)) + 1;
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to open Discord webhook spool in " + directory, e);
+        }
+    }
+
+    // Returns false if the spool is full or failed, the embed then only lives in memory
+    synchronized boolean append(QueuedEmbed queued) {
+        if (closed) {
+            return false;
+        }
+
+        byte[][] strings = encode(queued.embed());
+        int size = 1 + 8 + 8 + 1 + 16 + 1;
+        for (byte[] string : strings) {
+            size += 1 + string.length;
+        }
+
+        try {
+            if (!ensureRoom(size, false)) {
+                return false;
+            }
+            if (full) {
+                full = false;
+                plugin.getLogger().info("Discord webhook spool has room again");
+            }
+
+            Embed embed = queued.embed();
+            active.put(RECORD_MARKER);
+            active.putLong(queued.id());
+            active.putLong(queued.createdAt());
+            active.put((byte) embed.type().ordinal());
+            active.putLong(embed.uuid().getMostSignificantBits());
+            active.putLong(embed.uuid().getLeastSignificantBits());
+            active.put((byte) strings[0].length);
+            active.put(strings[0]);
+            active.put((byte) (strings.length - 1));
+            for (int i = 1; i < strings.length; i++) {
+                active.put((byte) strings[i].length);
+                active.put(strings[i]);
+            }
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to spool Discord embed", e);
+            return false;
+        }
+    }
+
+    // Marks embeds as delivered (or given up on) so they are not sent again after a restart
+    synchronized void ack(Collection<Long> ids) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            for (long id : ids) {
+                ensureRoom(ACK_SIZE, true);
+                active.put(ACK_MARKER);
+                active.putLong(id);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to acknowledge Discord embeds in the spool", e);
+        }
+    }
+
+    // Oldest undelivered embeds that are still young enough to send, skipping ones already queued in memory.
+    // Also deletes segments at the front that have nothing left to deliver.
+    synchronized List<QueuedEmbed> recover(Set<Long> queued, int limit, long maxAge) {
+        List<QueuedEmbed> recovered = new ArrayList<>();
+        try {
+            Map<Long, QueuedEmbed> pending = scan(maxAge);
+            for (QueuedEmbed embed : pending.values()) {
+                if (recovered.size() >= limit) {
+                    break;
+                }
+                if (!queued.contains(embed.id())) {
+                    recovered.add(embed);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to read the Discord webhook spool", e);
+        }
+        return recovered;
+    }
+
+    synchronized int getSegmentCount() {
+        return sealed.size() + (active != null ? 1 : 0);
+    }
+
+    // Writes are visible to the next start as soon as they are made; force only guards against an OS crash
+    synchronized void close() {
+        if (active != null) {
+            active.force();
+        }
+        closed = true;
+    }
+
+    // The segment limit only applies to new records. Acks are always written, even past the limit, because they
+    // are what lets a full spool delete its delivered segments; they take 9 bytes per record at most.
+    private boolean ensureRoom(int size, boolean ack) throws IOException {
+        if (active != null && active.remaining() >= size) {
+            return true;
+        }
+
+        if (active != null) {
+            active.force();
+            sealed.add(activePath);
+            active = null;
+            activePath = null;
+        }
+
+        if (!ack && sealed.size() >= plugin.getConfiguration().getDiscordSpoolMaxSegments()) {
+            // Reading every segment per refused embed would be wasteful, a few seconds between tries is plenty
+            if (full && System.currentTimeMillis() - lastFullScan < FULL_RESCAN_INTERVAL) {
+                return false;
+            }
+            lastFullScan = System.currentTimeMillis();
+            scan(plugin.getConfiguration().getDiscordMaxAge());
+            if (sealed.size() >= plugin.getConfiguration().getDiscordSpoolMaxSegments()) {
+                if (!full) {
+                    full = true;
+                    plugin.getLogger().warn("Discord webhook spool is full, new embeds are only kept in memory until it drains");
+                }
+                return false;
+            }
+        }
+
+        activePath = directory.resolve(SEGMENT_PREFIX + nextSequence++ + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(activePath,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+        return true;
+    }
+
+    // Reads every segment in order and returns the embeds without an ack. Sealed segments at the front whose
+    // embeds were all acked or expired are deleted; their acks can only refer to embeds in the same or earlier segments.
+    private Map<Long, QueuedEmbed> scan(long maxAge) throws IOException {
+        Map<Long, QueuedEmbed> pending = new LinkedHashMap<>();
+        Map<Path, List<Long>> idsBySegment = new LinkedHashMap<>();
+
+        List<Path> segments = new ArrayList<>(sealed);
+        if (activePath != null) {
+            segments.add(activePath);
+        }
+        for (Path segment : segments) {
+            List<Long> ids = new ArrayList<>();
+            idsBySegment.put(segment, ids);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                readSegment(buffer, pending, ids);
+            }
+        }
+
+        long cutoff = System.currentTimeMillis() - maxAge;
+        pending.values().removeIf(embed -> embed.createdAt() < cutoff);
+
+        for (Path segment : List.copyOf(sealed)) {
+            if (idsBySegment.get(segment).stream().anyMatch(pending::containsKey)) {
+                break;
+            }
+            Files.deleteIfExists(segment);
+            sealed.remove(segment);
+        }
+        return pending;
+    }
+
+    // Stops at the end of the written region (zero fill) or at a record cut short by a crash
+    private static void readSegment(MappedByteBuffer buffer, Map<Long, QueuedEmbed> pending, List<Long> ids) {
+        try {
+            while (buffer.hasRemaining()) {
+                byte marker = buffer.get();
+                if (marker == ACK_MARKER) {
+                    pending.remove(buffer.getLong());
+                    continue;
+                }
+                if (marker != RECORD_MARKER) {
+                    return;
+                }
+
+                long id = buffer.getLong();
+                long createdAt = buffer.getLong();
+                int type = buffer.get();
+                UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                String username = readString(buffer);
+                List<String> route = new ArrayList<>();
+                for (int i = buffer.get() & 0xFF; i > 0; i--) {
+                    route.add(readString(buffer));
+                }
+
+                ids.add(id);
+                if (type >= 0 && type < Embed.Type.values().length) {
+                    Embed embed = new Embed(Embed.Type.values()[type], uuid, username, List.copyOf(route));
+                    pending.put(id, new QueuedEmbed(id, createdAt, embed));
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // Partial record at the end
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.get() & 0xFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Username first, then the route; each capped at 255 bytes like the write journal
+    private static byte[][] encode(Embed embed) {
+        List<String> route = embed.route();
+        int count = Math.min(255, route.size());
+        byte[][] strings = new byte[1 + count][];
+        strings[0] = truncate(embed.username());
+        for (int i = 0; i < count; i++) {
+            strings[1 + i] = truncate(route.get(i));
+        }
+        return strings;
+    }
+
+    private static byte[] truncate(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= 255) {
+            return bytes;
+        }
+        // Cut on a character boundary so the name still decodes
+        int end = 255;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        byte[] truncated = new byte[end];
+        System.arraycopy(bytes, 0, truncated, 0, end);
+        return truncated;
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,40 +1,70 @@
 package com.example.lastserver.listeners;
 
 import com.example.lastserver.LastServer;
+import com.example.lastserver.database.ServerHealth;
 import com.example.lastserver.utils.MessageUtil;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
 import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 
 import net.kyori.adventure.text.Component;
 
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 public class ConnectionListener {
     private final LastServer plugin;
+    private static final long LOOKUP_TIMEOUT = 1000;
 
     public ConnectionListener(LastServer plugin) {
         this.plugin = plugin;
     }
 
+    @Subscribe(order = PostOrder.LAST)
+    public void onPreLogin(PreLoginEvent event) {
+        // Modern clients send their UUID up front, so the lookup can overlap with Mojang authentication.
+        // It is only a claim until then; offline-mode players get a different UUID, so don't look those up at all.
+        PreLoginEvent.PreLoginComponentResult result = event.getResult();
+        boolean onlineMode = !result.isForceOfflineMode() &&
+            (plugin.getServer().getConfiguration().isOnlineMode() || result.isOnlineModeAllowed());
+        if (result.isAllowed() && onlineMode && event.getUniqueId() != null) {
+            plugin.getServerManager().prefetchUnverifiedProfile(event.getUniqueId());
+        }
+    }
+
     @Subscribe(order = PostOrder.EARLY)
-    public void onPlayerChooseInitialServer(PlayerChooseInitialServerEvent event) {
+    public void onLogin(LoginEvent event) {
+        plugin.getServerManager().startSession(event.getPlayer().getUniqueId());
+        // No-op if the pre-login prefetch already covers this UUID
+        plugin.getServerManager().prefetchProfile(event.getPlayer().getUniqueId());
+    }
+
+    @Subscribe(order = PostOrder.EARLY)
+    public EventTask onPlayerChooseInitialServer(PlayerChooseInitialServerEvent event) {
         plugin.getLogger().info("!!! EVENT FIRED FOR: " + event.getPlayer().getUsername());
         
         Player player = event.getPlayer();
-        String uuid = player.getUniqueId().toString();
+        UUID uuid = player.getUniqueId();
         String username = player.getUsername();
         
-        RegisteredServer targetServer = determineTargetServer(player, uuid, username);
-        
+        // Let Velocity park the event instead of a thread while the lookup is in flight
+        return EventTask.resumeWhenComplete(determineTargetServer(player, uuid, username)
+            .thenAccept(targetServer -> applyInitialServer(event, targetServer, username)));
+    }
+
+    private void applyInitialServer(PlayerChooseInitialServerEvent event, RegisteredServer targetServer, String username) {
         // CRITICAL SAFETY CHECK
         if (targetServer == null) {
             plugin.getLogger().error("determineTargetServer returned null for " + username);
             
-            // Try each fallback option
-            targetServer = plugin.getServer().getServer("resource").orElse(null);
+            // Least loaded server that is up, whatever it is
+            targetServer = plugin.getServerManager().selectAnyServer();
             
             if (targetServer == null) {
                 // Get literally ANY server
@@ -52,72 +82,104 @@ public class ConnectionListener {
         event.setInitialServer(targetServer);
     }
 
-    private RegisteredServer determineTargetServer(Player player, String uuid, String username) {
+    private CompletableFuture<RegisteredServer> determineTargetServer(Player player, UUID uuid, String username) {
         plugin.getLogger().info("=== determineTargetServer called for {} ===", username);
         
         // Maintenance mode
-        if (plugin.getConfiguration().isMaintenanceEnabled()) {
+        if (plugin.isMaintenance()) {
             plugin.getLogger().info("Maintenance mode is enabled");
-            return plugin.getServer().getServer(plugin.getConfiguration().getMaintenanceServer()).orElse(null);
+            return CompletableFuture.completedFuture(
+                plugin.getServer().getServer(plugin.getConfiguration().getMaintenanceServer()).orElse(null));
         }
 
         plugin.getLogger().info("Checking bypass permission...");
         // Bypass permission
         if (player.hasPermission(plugin.getConfiguration().getBypassPermission())) {
             plugin.getLogger().info("Player has bypass permission!");
-            return plugin.getServer().getServer(plugin.getConfiguration().getFallbackServer()).orElse(null);
+            return CompletableFuture.completedFuture(
+                plugin.getServerManager().selectServer(plugin.getConfiguration().getFallbackServer(), uuid));
         }
         plugin.getLogger().info("Player does NOT have bypass permission");
 
         plugin.getLogger().info("Attempting to retrieve last server from database...");
-        // Try to get last server synchronously (this will use cache or return null)
-        try {
-            plugin.getLogger().info("Calling getLastServer for UUID: {}", uuid);
-            String lastServer = plugin.getServerManager().getLastServer(uuid).get(1000, TimeUnit.MILLISECONDS);
-            plugin.getLogger().info("Database returned: '{}'", lastServer);
-            
-            if (lastServer == null) {
-                plugin.getLogger().info("Database returned null - player has no saved server");
-            } else {
-                // Check each validation step
-                plugin.getLogger().info("Validating last server: {}", lastServer);
-                
-                boolean isBlacklisted = plugin.getConfiguration().getBlacklistedServers().contains(lastServer);
-                plugin.getLogger().info("- Is blacklisted? {}", isBlacklisted);
-                
-                boolean isValidName = isValidServerName(lastServer);
-                plugin.getLogger().info("- Valid server name? {}", isValidName);
-                
-                boolean serverExists = plugin.getServerManager().serverExists(lastServer);
-                plugin.getLogger().info("- Server exists? {}", serverExists);
-                
-                // Removed permission check - if they were on the server, they can rejoin it
-                
-                if (!isBlacklisted && isValidName && serverExists) {
-                    RegisteredServer server = plugin.getServerManager().getServer(lastServer);
-                    if (server != null) {
-                        plugin.getLogger().info("All checks passed! Returning server: {}", lastServer);
-                        player.sendMessage(MessageUtil.formatWithServer(
-                            plugin.getConfiguration().getMessage("sending-last-server"),
-                            lastServer
-                        ));
-                        return server;
-                    } else {
-                        plugin.getLogger().warn("getServer() returned null for: {}", lastServer);
+        plugin.getLogger().info("Calling getLastServer for UUID: {}", uuid);
+        
+        // The lookup still has to finish within the deadline, otherwise we fall through to the first join server
+        return plugin.getServerManager().loadSessionProfile(uuid)
+            .thenApply(plugin.getServerManager()::getActiveLastServer)
+            .orTimeout(LOOKUP_TIMEOUT, TimeUnit.MILLISECONDS)
+            .handle((lastServer, throwable) -> {
+                if (throwable != null) {
+                    // Database timeout or error, fall back to first join server
+                    plugin.getLogger().error("Exception while retrieving last server: ", throwable);
+                    if (plugin.getConfiguration().isDebug()) {
+                        plugin.getLogger().info("Could not retrieve last server for {}, using first join server", username);
                     }
-                } else {
-                    plugin.getLogger().info("Validation failed for server: {} (blacklisted={}, validName={}, exists={})", 
-                    lastServer, isBlacklisted, isValidName, serverExists);
+                    return getFirstJoinServer(player);
                 }
+                
+                RegisteredServer server = resolveLastServer(player, lastServer);
+                return server != null ? server : getFirstJoinServer(player);
+            });
+    }
+
+    private RegisteredServer resolveLastServer(Player player, String lastServer) {
+        plugin.getLogger().info("Database returned: '{}'", lastServer);
+        
+        if (lastServer == null) {
+            plugin.getLogger().info("Database returned null - player has no saved server");
+            return null;
+        }
+        
+        // Check each validation step
+        plugin.getLogger().info("Validating last server: {}", lastServer);
+        
+        boolean isBlacklisted = plugin.getConfiguration().isBlacklisted(lastServer);
+        plugin.getLogger().info("- Is blacklisted? {}", isBlacklisted);
+        
+        boolean isValidName = isValidServerName(lastServer);
+        plugin.getLogger().info("- Valid server name? {}", isValidName);
+        
+        boolean serverExists = plugin.getServerManager().serverExists(lastServer);
+        plugin.getLogger().info("- Server exists? {}", serverExists);
+        
+        // Read from the background health monitor, a server it hasn't checked yet gets the benefit of the doubt
+        ServerHealth health = plugin.getServerManager().getServerHealth(lastServer);
+        boolean isOnline = !health.isKnown() || health.online();
+        plugin.getLogger().info("- Server online? {}", isOnline);
+        
+        // Removed permission check - if they were on the server, they can rejoin it
+        
+        if (serverExists && !isOnline) {
+            player.sendMessage(MessageUtil.format(plugin.getConfiguration().getMessage("server-offline")));
+            return null;
+        }
+        
+        if (!isBlacklisted && isValidName && serverExists) {
+            RegisteredServer server = plugin.getServerManager().getServer(lastServer);
+            if (server != null && plugin.getServerManager().isServerFull(server)) {
+                plugin.getLogger().info("Last server {} is full", lastServer);
+                player.sendMessage(MessageUtil.format(plugin.getConfiguration().getMessage("server-full")));
+                return null;
             }
-        } catch (Exception e) {
-            // Database timeout or error, fall back to first join server
-            plugin.getLogger().error("Exception while retrieving last server: ", e);
-            if (plugin.getConfiguration().isDebug()) {
-                plugin.getLogger().info("Could not retrieve last server for {}, using first join server", username);
+            if (server != null) {
+                plugin.getLogger().info("All checks passed! Returning server: {}", lastServer);
+                player.sendMessage(MessageUtil.formatWithServer(
+                    plugin.getConfiguration().getMessage("sending-last-server"),
+                    lastServer
+                ));
+                return server;
+            } else {
+                plugin.getLogger().warn("getServer() returned null for: {}", lastServer);
             }
+        } else {
+            plugin.getLogger().info("Validation failed for server: {} (blacklisted={}, validName={}, exists={})", 
+            lastServer, isBlacklisted, isValidName, serverExists);
         }
+        return null;
+    }
 
+    private RegisteredServer getFirstJoinServer(Player player) {
         // Default to first join server
         plugin.getLogger().info("Falling back to first join server");
         player.sendMessage(MessageUtil.format(plugin.getConfiguration().getMessage("first-join")));
@@ -125,9 +187,8 @@ public class ConnectionListener {
         String fallbackServer = plugin.getConfiguration().getFallbackServer();
         plugin.getLogger().info("First join server: '{}', Fallback server: '{}'", firstJoinServer, fallbackServer);
         
-        return plugin.getServer().getServer(firstJoinServer).orElse(
-            plugin.getServer().getServer(fallbackServer).orElse(null)
-        );
+        RegisteredServer server = plugin.getServerManager().selectServer(firstJoinServer, player.getUniqueId());
+        return server != null ? server : plugin.getServerManager().selectServer(fallbackServer, player.getUniqueId());
     }
     
     private boolean isValidServerName(String serverName) {
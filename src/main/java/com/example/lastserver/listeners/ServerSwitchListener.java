@@ -1,6 +1,7 @@
 package com.example.lastserver.listeners;
 
 import com.example.lastserver.LastServer;
+import com.example.lastserver.config.Configuration;
 import com.example.lastserver.discord.DiscordWebhook;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
@@ -8,14 +9,23 @@ import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class ServerSwitchListener {
     private final LastServer plugin;
-    private final ConcurrentHashMap<String, Long> recentSwitches = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, String> lastKnownServer = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Long> recentSwitches = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, PendingLeave> lastKnownServer = new ConcurrentHashMap<>();
     private static final long SWITCH_COOLDOWN = TimeUnit.SECONDS.toMillis(3);
+    private static final long REJOIN_WINDOW = TimeUnit.MINUTES.toMillis(5);
+    private static final int PENDING_LEAVES_VERSION = 1;
 
     public ServerSwitchListener(LastServer plugin) {
         this.plugin = plugin;
@@ -34,21 +44,22 @@ public class ServerSwitchListener {
 
         String serverName = currentServer.getServerInfo().getName();
         RegisteredServer previousServer = event.getPreviousServer();
-        String uuid = player.getUniqueId().toString();
+        UUID uuid = player.getUniqueId();
         String username = player.getUsername();
+        // Read the settings once so a reload can't change them halfway through this event
+        Configuration config = plugin.getConfiguration();
         
         // Save to database (existing code)
-        if (!plugin.getConfiguration().getBlacklistedServers().contains(serverName)) {
+        if (!config.isBlacklisted(serverName)) {
             plugin.getServerManager().saveLastServer(uuid, username, serverName).thenRun(() -> {
-                if (plugin.getConfiguration().isDebug()) {
+                if (config.isDebug()) {
                     plugin.getLogger().info("Saved last server '{}' for player {}", serverName, username);
                 }
             });
-            plugin.getServerManager().clearPlayerCache(uuid);
         }
 
         // Handle Discord notifications if enabled
-        if (!plugin.getConfiguration().isDiscordEnabled()) {
+        if (!config.isDiscordEnabled()) {
             return;
         }
 
@@ -60,20 +71,21 @@ public class ServerSwitchListener {
         // SMART DETECTION LOGIC
         if (previousServer == null) {
             // No previous server - this is a network join
-            String expectedServer = lastKnownServer.get(uuid);
+            PendingLeave pending = lastKnownServer.get(uuid);
+            String expectedServer = pending != null ? pending.serverName : null;
             
             if (expectedServer != null && !expectedServer.equals(serverName)) {
                 // They joined a different server than they left from = SERVER SWITCH
                 RegisteredServer leftFrom = plugin.getServer().getServer(expectedServer).orElse(null);
-                if (leftFrom != null && !plugin.getConfiguration().getBlacklistedServers().contains(expectedServer) &&
-                    !plugin.getConfiguration().getBlacklistedServers().contains(serverName)) {
+                if (leftFrom != null && !config.isBlacklisted(expectedServer) &&
+                    !config.isBlacklisted(serverName)) {
                     handleServerSwitch(player, leftFrom, currentServer);
                 }
             } else {
                 // They joined the same server they left from (or first join) = REAL JOIN
-                if (!plugin.getConfiguration().getBlacklistedServers().contains(serverName)) {
+                if (!config.isBlacklisted(serverName)) {
                     // Check if first time
-                    plugin.getMySQL().isFirstTimePlayer(uuid).thenAccept(isFirstTime -> {
+                    plugin.getServerManager().isFirstTimePlayer(uuid).thenAccept(isFirstTime -> {
                         DiscordWebhook.sendJoinEmbed(plugin, player, currentServer, isFirstTime);
                     });
                 }
@@ -90,55 +102,138 @@ public class ServerSwitchListener {
     @Subscribe
     public void onDisconnect(DisconnectEvent event) {
         Player player = event.getPlayer();
-        String uuid = player.getUniqueId().toString();
+        UUID uuid = player.getUniqueId();
+        plugin.getServerManager().endSession(uuid);
         
         // Store their current server for comparison when they rejoin
         player.getCurrentServer().ifPresent(connection -> {
             String serverName = connection.getServer().getServerInfo().getName();
-            lastKnownServer.put(uuid, serverName);
-            
-            // Schedule cleanup after 5 minutes (in case they don't rejoin)
-            plugin.getServer().getScheduler()
-                .buildTask(plugin, () -> {
-                    String stored = lastKnownServer.get(uuid);
-                    if (serverName.equals(stored)) {
-                        lastKnownServer.remove(uuid);
-                        
-                        // They never rejoined - send leave message
-                        if (plugin.getConfiguration().isDiscordEnabled() && 
-                            !player.hasPermission("lastserver.silent") &&
-                            !plugin.getConfiguration().getBlacklistedServers().contains(serverName)) {
-                            DiscordWebhook.sendLeaveEmbed(plugin, player, connection.getServer());
-                        }
-                    }
-                })
-                .delay(5, TimeUnit.MINUTES)
-                .schedule();
+            PendingLeave pending = new PendingLeave(serverName, player.getUsername(), player.hasPermission("lastserver.silent"),
+                System.currentTimeMillis() + REJOIN_WINDOW);
+            track(uuid, pending);
         });
     }
 
+    // Check back once the window is over (in case they don't rejoin)
+    private void track(UUID uuid, PendingLeave pending) {
+        lastKnownServer.put(uuid, pending);
+        long delay = Math.max(0, pending.deadline - System.currentTimeMillis());
+        plugin.getTimingWheel().schedule(uuid, pending, delay, TimeUnit.MILLISECONDS, this::rejoinWindowExpired);
+    }
+
+    // They never rejoined - send leave message, unless they came back and left again since
+    private void rejoinWindowExpired(UUID uuid, PendingLeave pending) {
+        if (lastKnownServer.remove(uuid, pending)) {
+            sendLeave(uuid, pending);
+        }
+    }
+
+    // Velocity disconnects everyone before the shutdown event, so this holds every player who was online.
+    // Their rejoin windows are saved with their deadlines and picked up again by the next start instead of
+    // being treated as leaves; players who reconnect to the restarted proxy in time never get one.
+    public void savePendingLeaves(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+            out.writeInt(PENDING_LEAVES_VERSION);
+            out.writeInt(lastKnownServer.size());
+            for (var entry : lastKnownServer.entrySet()) {
+                PendingLeave pending = entry.getValue();
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                out.writeUTF(pending.serverName);
+                out.writeUTF(pending.username);
+                out.writeBoolean(pending.silent);
+                out.writeLong(pending.deadline);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to save pending leave checks", e);
+            return;
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to save pending leave checks", e);
+        }
+    }
+
+    // Re-arms the rejoin windows saved at the last shutdown; ones that ran out while the proxy was down expire right away
+    public void restorePendingLeaves(Path file) {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() == PENDING_LEAVES_VERSION) {
+                for (int count = in.readInt(); restored < count; restored++) {
+                    UUID uuid = new UUID(in.readLong(), in.readLong());
+                    track(uuid, new PendingLeave(in.readUTF(), in.readUTF(), in.readBoolean(), in.readLong()));
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warn("Failed to read pending leave checks, restored {}", restored, e);
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            plugin.getLogger().warn("Failed to delete " + file, e);
+        }
+        if (restored > 0 && plugin.getConfiguration().isDebug()) {
+            plugin.getLogger().info("Restored {} pending leave checks from the last shutdown", restored);
+        }
+    }
+
+    private void sendLeave(UUID uuid, PendingLeave pending) {
+        Configuration config = plugin.getConfiguration();
+        if (config.isDiscordEnabled() && !pending.silent && !config.isBlacklisted(pending.serverName)) {
+            DiscordWebhook.sendLeaveEmbed(plugin, uuid, pending.username);
+        }
+    }
+
     private void handleServerSwitch(Player player, RegisteredServer from, RegisteredServer to) {
         // Skip if either server is blacklisted
-        if (plugin.getConfiguration().getBlacklistedServers().contains(from.getServerInfo().getName()) ||
-            plugin.getConfiguration().getBlacklistedServers().contains(to.getServerInfo().getName())) {
+        Configuration config = plugin.getConfiguration();
+        if (config.isBlacklisted(from.getServerInfo().getName()) ||
+            config.isBlacklisted(to.getServerInfo().getName())) {
+            return;
+        }
+
+        // Quick hops are merged into one embed by the webhook aggregator; without it, a cooldown keeps the spam down
+        if (config.getDiscordAggregateWindow() > 0) {
+            DiscordWebhook.sendSwitchEmbed(plugin, player, from, to);
             return;
         }
 
         // Cooldown check to prevent spam
-        String uuid = player.getUniqueId().toString();
+        UUID uuid = player.getUniqueId();
         Long lastSwitch = recentSwitches.get(uuid);
         if (lastSwitch != null && System.currentTimeMillis() - lastSwitch < SWITCH_COOLDOWN) {
             return;
         }
-        recentSwitches.put(uuid, System.currentTimeMillis());
-
-        // Clean up old cooldown entries periodically
-        if (recentSwitches.size() > 100) {
-            long cutoff = System.currentTimeMillis() - SWITCH_COOLDOWN;
-            recentSwitches.entrySet().removeIf(entry -> entry.getValue() < cutoff);
-        }
+        Long now = System.currentTimeMillis();
+        recentSwitches.put(uuid, now);
+        // Only removes this entry; a newer cooldown stays
+        plugin.getTimingWheel().schedule(uuid, now, SWITCH_COOLDOWN, TimeUnit.MILLISECONDS, recentSwitches::remove);
 
         // Send the switch embed to Discord
         DiscordWebhook.sendSwitchEmbed(plugin, player, from, to);
     }
-}
\ No newline at end of file
+
+    // What a disconnect leaves behind while we wait to see if the player rejoins, without holding on to the Player.
+    // Compared by identity, so an old timer can't remove a newer check that happens to hold the same values.
+    private static final class PendingLeave {
+        final String serverName;
+        final String username;
+        final boolean silent;
+        final long deadline;
+
+        PendingLeave(String serverName, String username, boolean silent, long deadline) {
+            this.serverName = serverName;
+            this.username = username;
+            this.silent = silent;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.lastserver.utils;
+
+import com.example.lastserver.LastServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hashed timing wheel for the plugin's deferred expiries (leave detection, cooldowns). Scheduling only appends a
+// small entry to a queue; one ticker thread moves new entries into their bucket and expires a bucket per tick.
+// There is no cancel: owners keep the current value in their own map and the handler removes it only if it
+// is still the one that was scheduled, so a stale expiry does nothing.
+public class TimingWheel {
+    private static final long TICK_MILLIS = 100;
+    // 512 ticks of 100ms is one rotation every 51.2 seconds; longer delays wait out extra rotations
+    private static final int WHEEL_SIZE = 512;
+
+    private final LastServer plugin;
+    // Only touched by the ticker thread
+    private final Entry<?>[] buckets = new Entry<?>[WHEEL_SIZE];
+    private final ConcurrentLinkedQueue<Entry<?>> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Thread ticker;
+    private volatile boolean running;
+    private long startTime;
+    private long tick;
+
+    public TimingWheel(LastServer plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        startTime = System.currentTimeMillis();
+        running = true;
+        ticker = Thread.ofVirtual().name("lastserver-timing-wheel").start(this::run);
+    }
+
+    // Entries still waiting are dropped; anything that must survive a shutdown is flushed by its owner first
+    public void stop() {
+        running = false;
+        Thread thread = ticker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    // Calls the handler on the ticker thread once the delay has passed, give or take a tick. Handlers should be quick.
+    public <T> void schedule(UUID key, T payload, long delay, TimeUnit unit, ExpiryHandler<T> handler) {
+        incoming.add(new Entry<>(key, payload, System.currentTimeMillis() + unit.toMillis(delay), handler));
+        pending.incrementAndGet();
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private void run() {
+        List<Entry<?>> expired = new ArrayList<>();
+        while (running) {
+            // Fixed tick boundaries so a slow tick doesn't push every later one back
+            long tickEnd = startTime + (tick + 1) * TICK_MILLIS;
+            long sleep = tickEnd - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            transferIncoming();
+            collectExpired((int) (tick & (WHEEL_SIZE - 1)), expired);
+            tick++;
+
+            for (Entry<?> entry : expired) {
+                try {
+                    entry.expire();
+                } catch (RuntimeException e) {
+                    plugin.getLogger().error("Timer handler failed", e);
+                }
+            }
+            pending.addAndGet(-expired.size());
+            expired.clear();
+        }
+    }
+
+    private void transferIncoming() {
+        Entry<?> entry;
+        while ((entry = incoming.poll()) != null) {
+            // The tick whose end is at or after the deadline; anything overdue goes in the current one
+            long target = Math.max(tick, (entry.deadline - startTime + TICK_MILLIS - 1) / TICK_MILLIS - 1);
+            entry.rounds = (target - tick) / WHEEL_SIZE;
+            int index = (int) (target & (WHEEL_SIZE - 1));
+            entry.next = buckets[index];
+            buckets[index] = entry;
+        }
+    }
+
+    private void collectExpired(int index, List<Entry<?>> expired) {
+        Entry<?> remaining = null;
+        Entry<?> entry = buckets[index];
+        while (entry != null) {
+            Entry<?> next = entry.next;
+            if (entry.rounds <= 0) {
+                entry.next = null;
+                expired.add(entry);
+            } else {
+                entry.rounds--;
+                entry.next = remaining;
+                remaining = entry;
+            }
+            entry = next;
+        }
+        buckets[index] = remaining;
+    }
+
+    @FunctionalInterface
+    public interface ExpiryHandler<T> {
+        void expired(UUID key, T payload);
+    }
+
+    private static final class Entry<T> {
+        final UUID key;
+        final T payload;
+        final long deadline;
+        final ExpiryHandler<T> handler;
+        long rounds;
+        Entry<?> next;
+
+        Entry(UUID key, T payload, long deadline, ExpiryHandler<T> handler) {
+            this.key = key;
+            this.payload = payload;
+            this.deadline = deadline;
+            this.handler = handler;
+        }
+
+        void expire() {
+            handler.expired(key, payload);
+        }
+    }
+}